@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates a synthetic tree of bundle fragments : {@code files} fragments per locale, each one holding
+ * {@code keysPerFile} keys prefixed by the name of the fragment.
+ * The values are {@code valueLength} characters long and {@code quoteDensity} is the probability of each word to
+ * contain a single quote. The tree only depends on its parameters, two trees of the same size are identical.
+ */
+public class BundleTree {
+    static final String PATTERN = "l10n/*.properties";
+    private static final String[] LOCALES = {"", "fr", "en", "de", "es", "it", "nl", "pt", "pl", "sv", "da", "fi",
+                                             "nb", "cs", "hu", "ro", "el", "tr", "ru", "uk", "ja", "ko", "zh", "ar",
+                                             "he"};
+
+    private final File directory;
+
+    public BundleTree(final int files, final int locales, final int keysPerFile, final int valueLength,
+                      final double quoteDensity) throws IOException {
+        if (locales > LOCALES.length) {
+            throw new IllegalArgumentException("At most " + LOCALES.length + " locales are supported");
+        }
+        directory = Files.createTempDir();
+        final File l10n = new File(directory, "l10n");
+        if (!l10n.mkdirs()) {
+            throw new IOException("Could not create directory : " + l10n.getAbsolutePath());
+        }
+        final Random random = new Random(42);
+        for (int file = 0; file < files; file++) {
+            final String prefix = "bundle" + file;
+            for (int locale = 0; locale < locales; locale++) {
+                final StringBuilder content = new StringBuilder(keysPerFile * (valueLength + 32));
+                for (int key = 0; key < keysPerFile; key++) {
+                    content.append(prefix).append(".key").append(key).append('=');
+                    appendValue(content, random, valueLength, quoteDensity);
+                    content.append('\n');
+                }
+                final String suffix = LOCALES[locale].isEmpty() ? "" : "_" + LOCALES[locale];
+                Files.write(content, new File(l10n, prefix + suffix + ".properties"), Charsets.ISO_8859_1);
+            }
+        }
+    }
+
+    private static void appendValue(final StringBuilder content, final Random random, final int valueLength,
+                                    final double quoteDensity) {
+        final int end = content.length() + valueLength;
+        while (content.length() < end) {
+            if (random.nextDouble() < quoteDensity) {
+                content.append("l'");
+            }
+            content.append("word").append(random.nextInt(1000)).append(' ');
+        }
+        content.setLength(end);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public Merge createMerge() {
+        final Merge merge = new Merge();
+        merge.setTarget("language.properties");
+        merge.setPattern(PATTERN);
+        return merge;
+    }
+
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stage of {@link MergeProperty} separately, then the whole merge, against a generated
+ * {@link BundleTree}.
+ * Run with {@code java -jar target/benchmarks.jar MergeBenchmark -p files=200 -p keysPerFile=500}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MergeBenchmark {
+    @Param("50")
+    public int files;
+    @Param("10")
+    public int locales;
+    @Param("200")
+    public int keysPerFile;
+    @Param("40")
+    public int valueLength;
+    @Param("0.1")
+    public double quoteDensity;
+
+    private final Log log = new QuietLog();
+    private BundleTree tree;
+    private File output;
+    private Merge merge;
+    private MergeProperty mergeProperty;
+    private Map<String, Bundle> fragments;
+    private Map<String, Bundle> unescaped;
+    private Map<String, Bundle> loaded;
+    private Map<String, Bundle> processed;
+    private Map<String, Bundle> toProcess;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException, MojoExecutionException, MojoFailureException {
+        tree = new BundleTree(files, locales, keysPerFile, valueLength, quoteDensity);
+        output = new File(tree.getDirectory(), "out");
+        merge = tree.createMerge();
+        mergeProperty = new MergeProperty(merge, output.getPath(), tree.getDirectory(), log);
+        fragments = new LinkedHashMap<String, Bundle>();
+        for (String fileName : merge.getFileNames(tree.getDirectory())) {
+            fragments.put(fileName, load(new File(tree.getDirectory(), fileName)));
+        }
+        // loadFiles escapes the values as it reads them, the escaping is measured on the raw values of the files
+        unescaped = new LinkedHashMap<String, Bundle>();
+        for (Map.Entry<String, Bundle> fragment : fragments.entrySet()) {
+            final String locale = MergeProperty.extractLocaleFromFileName(fragment.getKey());
+            Bundle properties = unescaped.get(locale);
+            if (properties == null) {
+                properties = new Bundle();
+                unescaped.put(locale, properties);
+            }
+            properties.putAll(fragment.getValue());
+        }
+        loaded = mergeProperty.loadFiles();
+        processed = copy(loaded);
+        MergeProperty.processProperties(processed, merge, log);
+    }
+
+    @Setup(Level.Invocation)
+    public void copyUnescaped() {
+        toProcess = copy(unescaped);
+    }
+
+    /**
+     * The final files are only written when they change, without it every invocation after the first would only
+     * compare them.
+     */
+    @Setup(Level.Invocation)
+    public void deleteOutput() throws IOException {
+        FileUtils.deleteDirectory(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public Map<String, Bundle> loadFiles() throws MojoExecutionException, MojoFailureException {
+        return mergeProperty.loadFiles();
+    }
+
+    @Benchmark
+    public boolean checkKeys() throws MojoFailureException {
+        final KeyCheck keyCheck = new KeyCheck(merge.getExcludeKeyCheck());
+        boolean included = true;
+        for (Map.Entry<String, Bundle> entry : fragments.entrySet()) {
+            final String prefix = keyCheck.prefix(entry.getKey(), log);
+            if (prefix != null) {
+                KeyCheck.check(entry.getKey(), prefix, entry.getValue().keys());
+            } else {
+                included = false;
+            }
+        }
+        return included;
+    }
+
+    @Benchmark
+    public boolean containsInvalidPrefix() throws MojoFailureException {
+        boolean invalid = false;
+        for (Map.Entry<String, Bundle> entry : fragments.entrySet()) {
+            invalid |= MergeProperty.containsInvalidPrefix(MergeProperty.extractFilePrefix(entry.getKey()),
+                                                           entry.getValue());
+        }
+        return invalid;
+    }
+
+    @Benchmark
+    public Map<String, Bundle> processProperties() throws MojoFailureException {
+        MergeProperty.processProperties(toProcess, merge, log);
+        return toProcess;
+    }
+
+    @Benchmark
+    public Map<String, Bundle> checkCountMismatch() throws MojoFailureException {
+        MergeProperty.checkCountMismatch(loaded, merge);
+        return loaded;
+    }
+
+    @Benchmark
+    public File saveToFile() throws MojoExecutionException, MojoFailureException {
+        mergeProperty.saveToFile(processed);
+        return output;
+    }
+
+    @Benchmark
+    public File merge() throws MojoExecutionException, MojoFailureException {
+        mergeProperty.merge();
+        return output;
+    }
+
+    static Bundle load(final File file) throws IOException, MojoFailureException {
+        final Bundle properties = new Bundle();
+        final Reader reader = new InputStreamReader(new FileInputStream(file), Charsets.ISO_8859_1);
+        try {
+            PropertiesParser.parse(reader, new BundleSource.Handler() {
+                @Override
+                public void property(final String key, final String value) {
+                    properties.put(key, value);
+                }
+            });
+        } finally {
+            reader.close();
+        }
+        return properties;
+    }
+
+    static Map<String, Bundle> copy(final Map<String, Bundle> propertiesMap) {
+        final Map<String, Bundle> copy = new LinkedHashMap<String, Bundle>();
+        for (Map.Entry<String, Bundle> entry : propertiesMap.entrySet()) {
+            final Bundle properties = new Bundle(entry.getValue().size());
+            properties.putAll(entry.getValue());
+            copy.put(entry.getKey(), properties);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the quote escaping and the writing of a single large bundle ({@code keys} keys) with the
+ * {@link String#replaceAll(String, String)} and {@link Properties#store(java.io.OutputStream, String)} based
+ * implementations they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OutputBenchmark {
+    @Param("100000")
+    public int keys;
+    @Param("40")
+    public int valueLength;
+    @Param("0.1")
+    public double quoteDensity;
+
+    private Bundle bundle;
+    private Properties properties;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException, MojoFailureException {
+        final BundleTree tree = new BundleTree(1, 1, keys, valueLength, quoteDensity);
+        try {
+            bundle = MergeBenchmark.load(new File(tree.getDirectory(), "l10n/bundle0.properties"));
+        } finally {
+            tree.delete();
+        }
+        properties = new Properties();
+        for (Map.Entry<String, String> entry : bundle) {
+            properties.setProperty(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void escapeWithRegex(final Blackhole blackhole) {
+        for (Map.Entry<String, String> entry : bundle) {
+            blackhole.consume(entry.getValue().replaceAll("([^'])'([^'])", "$1''$2"));
+        }
+    }
+
+    @Benchmark
+    public void escapeWithScanner(final Blackhole blackhole) {
+        for (Map.Entry<String, String> entry : bundle) {
+            blackhole.consume(MessageFormatEscaper.escape(entry.getValue()));
+        }
+    }
+
+    @Benchmark
+    public byte[] storeWithProperties() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        properties.store(output, "language_fr.properties");
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] storeWithWriter() throws MojoExecutionException {
+        return new PropertiesWriter(true, "\n", Charsets.ISO_8859_1).write("language_fr.properties", bundle);
+    }
+}
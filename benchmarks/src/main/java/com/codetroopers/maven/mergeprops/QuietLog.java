@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A log discarding everything, so that logging does not weigh in the measures.
+ */
+public class QuietLog implements Log {
+    public boolean isDebugEnabled() {
+        return false;
+    }
+
+    public void debug(final CharSequence content) {
+    }
+
+    public void debug(final CharSequence content, final Throwable error) {
+    }
+
+    public void debug(final Throwable error) {
+    }
+
+    public boolean isInfoEnabled() {
+        return false;
+    }
+
+    public void info(final CharSequence content) {
+    }
+
+    public void info(final CharSequence content, final Throwable error) {
+    }
+
+    public void info(final Throwable error) {
+    }
+
+    public boolean isWarnEnabled() {
+        return false;
+    }
+
+    public void warn(final CharSequence content) {
+    }
+
+    public void warn(final CharSequence content, final Throwable error) {
+    }
+
+    public void warn(final Throwable error) {
+    }
+
+    public boolean isErrorEnabled() {
+        return false;
+    }
+
+    public void error(final CharSequence content) {
+    }
+
+    public void error(final CharSequence content, final Throwable error) {
+    }
+
+    public void error(final Throwable error) {
+    }
+}
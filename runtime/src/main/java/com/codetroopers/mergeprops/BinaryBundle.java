@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.mergeprops;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A resource bundle looking its keys up in a binary bundle written by the merge properties maven plugin, usually
+ * memory-mapped : nothing is parsed when it is loaded, keys are binary searched in the sorted key table of the file
+ * and each value is decoded the first time it is asked for.
+ *
+ * @see BinaryBundleControl
+ */
+public class BinaryBundle extends ResourceBundle {
+    /**
+     * "MPB" and the version of the format.
+     */
+    private static final int MAGIC = 0x4d504201;
+    private static final int HEADER = 8;
+    private static final int ENTRY = 8;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final AtomicReferenceArray<String> values;
+    private volatile Set<String> keys;
+
+    /**
+     * @param buffer the content of the binary bundle, from its position to its limit
+     * @throws IOException if it is not a binary bundle
+     */
+    public BinaryBundle(final ByteBuffer buffer) throws IOException {
+        // only absolute reads are done, the buffer is shared by all the threads
+        this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        if (this.buffer.limit() < HEADER || this.buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary bundle");
+        }
+        count = this.buffer.getInt(4);
+        if (count < 0 || HEADER + (long) ENTRY * count > this.buffer.limit()) {
+            throw new IOException("Truncated binary bundle");
+        }
+        values = new AtomicReferenceArray<String>(count);
+    }
+
+    @Override
+    protected Object handleGetObject(final String key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = compare(buffer.getInt(HEADER + ENTRY * middle), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return value(middle);
+            }
+        }
+        return null;
+    }
+
+    private String value(final int index) {
+        String value = values.get(index);
+        if (value == null) {
+            value = decode(buffer.getInt(HEADER + ENTRY * index + 4));
+            values.set(index, value);
+        }
+        return value;
+    }
+
+    @Override
+    protected Set<String> handleKeySet() {
+        Set<String> keySet = keys;
+        if (keySet == null) {
+            keySet = new HashSet<String>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                keySet.add(decode(buffer.getInt(HEADER + ENTRY * i)));
+            }
+            keys = keySet = Collections.unmodifiableSet(keySet);
+        }
+        return keySet;
+    }
+
+    @Override
+    public Enumeration<String> getKeys() {
+        final Set<String> all = new LinkedHashSet<String>(handleKeySet());
+        if (parent != null) {
+            all.addAll(Collections.list(parent.getKeys()));
+        }
+        return Collections.enumeration(all);
+    }
+
+    /**
+     * Compares, in {@link String#compareTo(String)} order, the string at the given offset with the key, decoding
+     * only the chars needed.
+     */
+    private int compare(final int offset, final String key) {
+        final int length = length(offset);
+        final int common = Math.min(length, key.length());
+        int position = offset + varIntSize(length);
+        for (int i = 0; i < common; i++) {
+            final char c = charAt(position);
+            if (c != key.charAt(i)) {
+                return c - key.charAt(i);
+            }
+            position += charSize(position);
+        }
+        return length - key.length();
+    }
+
+    /**
+     * Decodes the string at the given offset : its length in chars, then its chars in modified UTF-8.
+     */
+    private String decode(final int offset) {
+        final char[] chars = new char[length(offset)];
+        int position = offset + varIntSize(chars.length);
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = charAt(position);
+            position += charSize(position);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return the length of the string at the given offset, a variable length integer of 7 bits groups
+     */
+    private int length(final int offset) {
+        int length = 0;
+        int position = offset;
+        for (int shift = 0; ; shift += 7) {
+            final int b = buffer.get(position++);
+            length |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return length;
+            }
+        }
+    }
+
+    private static int varIntSize(final int value) {
+        int size = 1;
+        for (int remaining = value >>> 7; remaining != 0; remaining >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    private char charAt(final int position) {
+        final int b = buffer.get(position) & 0xff;
+        if (b < 0x80) {
+            return (char) b;
+        }
+        if (b < 0xe0) {
+            return (char) ((b & 0x1f) << 6 | buffer.get(position + 1) & 0x3f);
+        }
+        return (char) ((b & 0x0f) << 12 | (buffer.get(position + 1) & 0x3f) << 6 | buffer.get(position + 2) & 0x3f);
+    }
+
+    private int charSize(final int position) {
+        final int b = buffer.get(position) & 0xff;
+        return b < 0x80 ? 1 : b < 0xe0 ? 2 : 3;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.mergeprops;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * Loads the binary bundles ({@code <name>_<locale>.bundle}) written by the merge properties maven plugin with the
+ * {@code binary} format, falling back to properties files for the bundles that have no binary file :
+ * <pre>
+ *     ResourceBundle.getBundle("l10n", locale, new BinaryBundleControl());
+ * </pre>
+ * Bundles found in a directory are memory-mapped, the other ones, in a jar for instance, are read into memory.
+ * In both cases they are not parsed, see {@link BinaryBundle}.
+ */
+public class BinaryBundleControl extends ResourceBundle.Control {
+    public static final String FORMAT = "merge-properties.binary";
+    public static final String EXTENSION = "bundle";
+    private static final List<String> FORMATS =
+            Collections.unmodifiableList(Arrays.asList(FORMAT, "java.properties"));
+
+    @Override
+    public List<String> getFormats(final String baseName) {
+        if (baseName == null) {
+            throw new NullPointerException("baseName can not be null");
+        }
+        return FORMATS;
+    }
+
+    @Override
+    public ResourceBundle newBundle(final String baseName, final Locale locale, final String format,
+                                    final ClassLoader loader, final boolean reload)
+            throws IllegalAccessException, InstantiationException, IOException {
+        if (!FORMAT.equals(format)) {
+            return super.newBundle(baseName, locale, format, loader, reload);
+        }
+        final URL url = loader.getResource(toResourceName(toBundleName(baseName, locale), EXTENSION));
+        if (url == null) {
+            return null;
+        }
+        return new BinaryBundle(read(url, reload));
+    }
+
+    static ByteBuffer read(final URL url, final boolean reload) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return map(new File(url.toURI()));
+            } catch (URISyntaxException e) {
+                // read through the URL
+            }
+        }
+        final URLConnection connection = url.openConnection();
+        if (reload) {
+            connection.setUseCaches(false);
+        }
+        final InputStream in = connection.getInputStream();
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(connection.getContentLength(), 0));
+            final byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Maps the file read only, the mapping stays valid once the channel is closed.
+     */
+    private static ByteBuffer map(final File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+    }
+}
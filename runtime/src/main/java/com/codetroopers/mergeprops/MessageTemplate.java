@@ -0,0 +1,163 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.mergeprops;
+
+import java.text.ChoiceFormat;
+import java.text.DateFormat;
+import java.text.Format;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * A message pattern split at build time into literal segments and argument slots, formatting its arguments as
+ * {@link MessageFormat} does without parsing the pattern. The formats of the arguments having one, {@code number}
+ * or {@code date} for instance, are created on first use. Instances are thread safe.
+ *
+ * @see MessageTemplates
+ */
+public final class MessageTemplate {
+    private static final char LITERAL = 'L';
+    private static final char ARGUMENT = 'A';
+
+    private final Locale locale;
+    /**
+     * The literal texts, {@code null} for the argument slots.
+     */
+    private final String[] literals;
+    private final int[] arguments;
+    private final String[] formatPatterns;
+    private final Format[] formats;
+
+    /**
+     * @param descriptor the descriptor written by the merge properties maven plugin
+     * @throws IllegalArgumentException if the descriptor is malformed
+     */
+    MessageTemplate(final String descriptor, final Locale locale) {
+        this.locale = locale;
+        int count = 0;
+        for (int i = 0; i < descriptor.length(); i += descriptor.charAt(i) == LITERAL ? 2 + descriptor.charAt(i + 1)
+                                                                                    : 3 + descriptor.charAt(i + 2)) {
+            count++;
+        }
+        literals = new String[count];
+        arguments = new int[count];
+        formatPatterns = new String[count];
+        formats = new Format[count];
+        int position = 0;
+        for (int segment = 0; segment < count; segment++) {
+            final char tag = descriptor.charAt(position);
+            if (tag == LITERAL) {
+                final int length = descriptor.charAt(position + 1);
+                literals[segment] = descriptor.substring(position + 2, position + 2 + length);
+                position += 2 + length;
+            } else if (tag == ARGUMENT) {
+                arguments[segment] = descriptor.charAt(position + 1);
+                final int length = descriptor.charAt(position + 2);
+                formatPatterns[segment] = length == 0 ? null
+                                                      : descriptor.substring(position + 3, position + 3 + length);
+                position += 3 + length;
+            } else {
+                throw new IllegalArgumentException("Malformed template descriptor");
+            }
+        }
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * @return the message, as {@link MessageFormat#format(Object)} would give it
+     */
+    public String format(final Object... values) {
+        final StringBuilder message = new StringBuilder();
+        for (int segment = 0; segment < literals.length; segment++) {
+            if (literals[segment] != null) {
+                message.append(literals[segment]);
+                continue;
+            }
+            final int argument = arguments[segment];
+            if (values == null || argument >= values.length) {
+                message.append('{').append(argument).append('}');
+                continue;
+            }
+            final Object value = values[argument];
+            if (value == null) {
+                message.append("null");
+            } else if (formatPatterns[segment] != null) {
+                final Format format = format(segment);
+                final String formatted;
+                synchronized (format) {
+                    formatted = format.format(value);
+                }
+                if (format instanceof ChoiceFormat && formatted.indexOf('{') >= 0) {
+                    // as MessageFormat does, a choice may hold a pattern using the arguments
+                    message.append(new MessageFormat(formatted, locale).format(values));
+                } else {
+                    message.append(formatted);
+                }
+            } else if (value instanceof Number) {
+                message.append(NumberFormat.getInstance(locale).format(value));
+            } else if (value instanceof Date) {
+                message.append(DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale)
+                                         .format(value));
+            } else {
+                message.append(value);
+            }
+        }
+        return message.toString();
+    }
+
+    private Format format(final int segment) {
+        synchronized (formats) {
+            if (formats[segment] == null) {
+                formats[segment] = new MessageFormat(formatPatterns[segment], locale).getFormats()[0];
+            }
+            return formats[segment];
+        }
+    }
+
+    /**
+     * @return a {@link MessageFormat} pattern of the template
+     */
+    @Override
+    public String toString() {
+        final StringBuilder pattern = new StringBuilder();
+        for (int segment = 0; segment < literals.length; segment++) {
+            if (literals[segment] != null) {
+                for (int i = 0; i < literals[segment].length(); i++) {
+                    final char c = literals[segment].charAt(i);
+                    if (c == '\'') {
+                        pattern.append("''");
+                    } else if (c == '{' || c == '}') {
+                        pattern.append('\'').append(c).append('\'');
+                    } else {
+                        pattern.append(c);
+                    }
+                }
+            } else if (formatPatterns[segment] != null) {
+                pattern.append('{').append(arguments[segment]).append(formatPatterns[segment], 2,
+                                                                       formatPatterns[segment].length());
+            } else {
+                pattern.append('{').append(arguments[segment]).append('}');
+            }
+        }
+        return pattern.toString();
+    }
+}
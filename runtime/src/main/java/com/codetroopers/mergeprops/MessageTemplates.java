@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.mergeprops;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The precompiled message templates of a locale ({@code <name>_<locale>.templates}), written by the merge properties
+ * maven plugin for the merges having {@code templates} set :
+ * <pre>
+ *     MessageTemplates templates = MessageTemplates.load(loader.getResource("language_fr.templates"), Locale.FRENCH);
+ *     String message = templates.format("lang.welcome", user, count);
+ * </pre>
+ * The file is a binary bundle of template descriptors, looked up without being parsed, each template is built once
+ * on first use.
+ */
+public final class MessageTemplates {
+    public static final String EXTENSION = "templates";
+
+    private final BinaryBundle descriptors;
+    private final Locale locale;
+    private final ConcurrentMap<String, MessageTemplate> templates = new ConcurrentHashMap<String, MessageTemplate>();
+
+    /**
+     * @param buffer the content of the templates file, from its position to its limit
+     * @throws IOException if it is not a templates file
+     */
+    public MessageTemplates(final ByteBuffer buffer, final Locale locale) throws IOException {
+        this.descriptors = new BinaryBundle(buffer);
+        this.locale = locale;
+    }
+
+    /**
+     * Memory-maps the file when the URL is a file, reads it into memory otherwise.
+     */
+    public static MessageTemplates load(final URL url, final Locale locale) throws IOException {
+        return new MessageTemplates(BinaryBundleControl.read(url, false), locale);
+    }
+
+    /**
+     * @return the template of the key, {@code null} if there is none
+     */
+    public MessageTemplate get(final String key) {
+        MessageTemplate template = templates.get(key);
+        if (template == null && descriptors.containsKey(key)) {
+            template = new MessageTemplate(descriptors.getString(key), locale);
+            final MessageTemplate previous = templates.putIfAbsent(key, template);
+            if (previous != null) {
+                template = previous;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * @throws MissingResourceException if there is no template for the key
+     */
+    public String format(final String key, final Object... values) {
+        final MessageTemplate template = get(key);
+        if (template == null) {
+            throw new MissingResourceException("Can't find template for key " + key, getClass().getName(), key);
+        }
+        return template.format(values);
+    }
+}
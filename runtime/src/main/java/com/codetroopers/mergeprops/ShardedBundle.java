@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.mergeprops;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A resource bundle split by key prefix, the part of the keys before their first dot : its index maps each prefix to
+ * the shard holding its keys, which is loaded the first time one of them is asked for. Listing the keys loads every
+ * shard.
+ *
+ * @see ShardedBundleControl
+ */
+public class ShardedBundle extends ResourceBundle {
+    private final ShardedBundleControl control;
+    private final Map<String, String> index;
+    private final String packagePrefix;
+    private final Locale locale;
+    private final ClassLoader loader;
+    private final boolean reload;
+    private final ConcurrentMap<String, ResourceBundle> shards = new ConcurrentHashMap<String, ResourceBundle>();
+
+    /**
+     * @param index         the shard name of each prefix
+     * @param packagePrefix the package of the base name, the shards being next to their index
+     */
+    ShardedBundle(final ShardedBundleControl control, final Map<String, String> index, final String packagePrefix,
+                  final Locale locale, final ClassLoader loader, final boolean reload) {
+        this.control = control;
+        this.index = index;
+        this.packagePrefix = packagePrefix;
+        this.locale = locale;
+        this.loader = loader;
+        this.reload = reload;
+    }
+
+    @Override
+    protected Object handleGetObject(final String key) {
+        final int dot = key.indexOf('.');
+        final String shardName = index.get(dot < 0 ? key : key.substring(0, dot));
+        if (shardName == null) {
+            return null;
+        }
+        final ResourceBundle shard = shard(shardName);
+        // only the lookup of the shard itself, its parents are the ones of this bundle
+        return shard instanceof BinaryBundle
+               ? ((BinaryBundle) shard).handleGetObject(key)
+               : ((PropertyResourceBundle) shard).handleGetObject(key);
+    }
+
+    @Override
+    protected Set<String> handleKeySet() {
+        final Set<String> keys = new HashSet<String>();
+        for (String shardName : new HashSet<String>(index.values())) {
+            keys.addAll(shard(shardName).keySet());
+        }
+        return keys;
+    }
+
+    @Override
+    public Enumeration<String> getKeys() {
+        final Set<String> all = new LinkedHashSet<String>(handleKeySet());
+        if (parent != null) {
+            all.addAll(Collections.list(parent.getKeys()));
+        }
+        return Collections.enumeration(all);
+    }
+
+    /**
+     * @return the number of shards loaded so far
+     */
+    int loadedShards() {
+        return shards.size();
+    }
+
+    private ResourceBundle shard(final String shardName) {
+        ResourceBundle shard = shards.get(shardName);
+        if (shard == null) {
+            shard = control.newShard(packagePrefix + shardName, locale, loader, reload);
+            final ResourceBundle previous = shards.putIfAbsent(shardName, shard);
+            if (previous != null) {
+                shard = previous;
+            }
+        }
+        return shard;
+    }
+}
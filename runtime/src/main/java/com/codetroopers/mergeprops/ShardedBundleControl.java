@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.mergeprops;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Properties;
+import java.util.ResourceBundle;
+
+/**
+ * Loads the bundles split by key prefix by the merge properties maven plugin, for the merges having
+ * {@code shardByPrefix} set, falling back to binary and properties files for the bundles that are not split :
+ * <pre>
+ *     ResourceBundle.getBundle("l10n", locale, new ShardedBundleControl());
+ * </pre>
+ * Only the index of the locale ({@code <name>_<locale>.shards}) is read when the bundle is loaded, each shard is
+ * loaded, from its binary file or else from its properties file, the first time one of its keys is asked for.
+ *
+ * @see ShardedBundle
+ */
+public class ShardedBundleControl extends BinaryBundleControl {
+    public static final String FORMAT = "merge-properties.sharded";
+    public static final String EXTENSION = "shards";
+    private static final List<String> FORMATS = Collections.unmodifiableList(
+            Arrays.asList(FORMAT, BinaryBundleControl.FORMAT, "java.properties"));
+
+    @Override
+    public List<String> getFormats(final String baseName) {
+        if (baseName == null) {
+            throw new NullPointerException("baseName can not be null");
+        }
+        return FORMATS;
+    }
+
+    @Override
+    public ResourceBundle newBundle(final String baseName, final Locale locale, final String format,
+                                    final ClassLoader loader, final boolean reload)
+            throws IllegalAccessException, InstantiationException, IOException {
+        if (!FORMAT.equals(format)) {
+            return super.newBundle(baseName, locale, format, loader, reload);
+        }
+        final URL url = loader.getResource(toResourceName(toBundleName(baseName, locale), EXTENSION));
+        if (url == null) {
+            return null;
+        }
+        // the shards are next to their index
+        final int separator = Math.max(baseName.lastIndexOf('.'), baseName.lastIndexOf('/'));
+        return new ShardedBundle(this, readIndex(url, reload), baseName.substring(0, separator + 1), locale, loader,
+                                 reload);
+    }
+
+    /**
+     * Loads a shard of the given locale only, its parents being the ones of the sharded bundle.
+     *
+     * @throws MissingResourceException if the shard can not be loaded
+     */
+    ResourceBundle newShard(final String shardName, final Locale locale, final ClassLoader loader,
+                            final boolean reload) {
+        try {
+            for (String format : super.getFormats(shardName)) {
+                final ResourceBundle shard = super.newBundle(shardName, locale, format, loader, reload);
+                if (shard != null) {
+                    return shard;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw missingShard(shardName, locale, e);
+        } catch (InstantiationException e) {
+            throw missingShard(shardName, locale, e);
+        } catch (IOException e) {
+            throw missingShard(shardName, locale, e);
+        }
+        throw missingShard(shardName, locale, null);
+    }
+
+    private MissingResourceException missingShard(final String shardName, final Locale locale,
+                                                  final Exception cause) {
+        final String bundleName = toBundleName(shardName, locale);
+        final MissingResourceException missing = new MissingResourceException(
+                "Can not load the shard " + bundleName + " listed by its index", bundleName, "");
+        missing.initCause(cause);
+        return missing;
+    }
+
+    /**
+     * @return the shard name of each prefix
+     */
+    private static Map<String, String> readIndex(final URL url, final boolean reload) throws IOException {
+        final URLConnection connection = url.openConnection();
+        if (reload) {
+            connection.setUseCaches(false);
+        }
+        final Properties properties = new Properties();
+        final InputStream in = connection.getInputStream();
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        final Map<String, String> index = new HashMap<String, String>(properties.size() * 4 / 3 + 1);
+        for (String prefix : properties.stringPropertyNames()) {
+            index.put(prefix, properties.getProperty(prefix));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,88 @@
+package com.codetroopers.mergeprops;
+
+import com.codetroopers.maven.mergeprops.BinaryBundleWriter;
+import com.codetroopers.maven.mergeprops.Bundle;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+import static org.junit.Assert.*;
+
+public class BinaryBundleControlTest {
+    @Test
+    public void testLooksKeysUp() throws Exception {
+        final Bundle bundle = new Bundle();
+        for (int i = 0; i < 1000; i++) {
+            bundle.put("key." + i, i % 2 == 0 ? "even" : "odd " + i);
+        }
+        bundle.put("", "empty key");
+        bundle.put("lang.summer", "\u00e9t\u00e9 \u20ac \ud83d\ude00 \ud800 \u0000");
+        bundle.put("\u00e9t\u00e9", "");
+        final BinaryBundle binary = new BinaryBundle(ByteBuffer.wrap(BinaryBundleWriter.write(bundle)));
+        for (Map.Entry<String, String> entry : bundle) {
+            assertEquals(entry.getValue(), binary.getString(entry.getKey()));
+        }
+        assertEquals(bundle.keys(), binary.keySet());
+        assertFalse(binary.containsKey("key.1000"));
+        assertFalse(binary.containsKey("key."));
+        assertFalse(binary.containsKey("\u00e9t"));
+    }
+
+    @Test
+    public void testStringsArePooled() throws Exception {
+        final Bundle bundle = new Bundle();
+        bundle.put("first", "the same long value");
+        final int single = BinaryBundleWriter.write(bundle).length;
+        bundle.put("other", "the same long value");
+        assertEquals(single + 8 + 6, BinaryBundleWriter.write(bundle).length);
+    }
+
+    @Test
+    public void testLoadsThroughTheControl() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final Bundle base = new Bundle();
+            base.put("lang.hello", "Hello");
+            base.put("lang.bye", "Bye");
+            final Bundle fr = new Bundle();
+            fr.put("lang.hello", "Bonjour");
+            Files.write(BinaryBundleWriter.write(base), new File(directory, "language.bundle"));
+            Files.write(BinaryBundleWriter.write(fr), new File(directory, "language_fr.bundle"));
+            Files.write("help.about=About\n", new File(directory, "help.properties"), Charsets.ISO_8859_1);
+            final ClassLoader loader = new URLClassLoader(new URL[]{directory.toURI().toURL()}, null);
+            final BinaryBundleControl control = new BinaryBundleControl();
+
+            final ResourceBundle language = ResourceBundle.getBundle("language", Locale.FRENCH, loader, control);
+            assertTrue(language instanceof BinaryBundle);
+            assertEquals("Bonjour", language.getString("lang.hello"));
+            // from the parent bundle
+            assertEquals("Bye", language.getString("lang.bye"));
+            assertEquals(Sets.newHashSet("lang.hello", "lang.bye"),
+                         Sets.newHashSet(Collections.list(language.getKeys())));
+            try {
+                language.getString("lang.missing");
+                fail("Missing key");
+            } catch (MissingResourceException e) {
+                assertEquals("lang.missing", e.getKey());
+            }
+
+            // bundles without binary file are read from their properties file
+            final ResourceBundle help = ResourceBundle.getBundle("help", Locale.FRENCH, loader, control);
+            assertEquals("About", help.getString("help.about"));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.codetroopers.mergeprops;
+
+import com.codetroopers.maven.mergeprops.Merge;
+import com.codetroopers.maven.mergeprops.MergeProperty;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.Reader;
+import java.text.MessageFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class MessageTemplatesTest {
+    private static final String[] PATTERNS = {
+            "plain text",
+            "",
+            "l'\u00e9t\u00e9 de {0}",
+            "{1} then {0} then {1}",
+            "quoted '{0}' and ''{0}'' and '''{0}'''",
+            "{0,number} / {0,number,#.##} / {0, number, percent}",
+            "{1,date,short} {1,time,HH:mm}",
+            "{0,choice,0#no file|1#one file|1<{0,number,integer} files} in {2}",
+            "{0,choice,0#'{'none'}'|1#'{0}'}",
+            "nested {0,number,'#'#}",
+            "missing {5}",
+    };
+
+    @Test
+    public void testFormatsAsMessageFormat() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final StringBuilder content = new StringBuilder();
+            for (int i = 0; i < PATTERNS.length; i++) {
+                content.append("lang.pattern").append(i).append('=')
+                       .append(PATTERNS[i].replace("\\", "\\\\").replace("\u00e9", "\\u00e9")).append('\n');
+            }
+            final File l10n = new File(directory, "l10n");
+            assertTrue(l10n.mkdirs());
+            Files.write(content, new File(l10n, "lang_fr.properties"), Charsets.ISO_8859_1);
+            Files.write(content, new File(l10n, "lang_en.properties"), Charsets.ISO_8859_1);
+            final Merge merge = new Merge();
+            merge.setTarget("language.properties");
+            merge.setPattern("l10n/*.properties");
+            merge.setTemplates(true);
+            final File output = new File(directory, "out");
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog()).merge();
+
+            final Object[][] arguments = {
+                    {3, new Date(1234567890000L), "l10n"},
+                    {1.5, new Date(0), null},
+                    {0, null},
+                    {"text", 2},
+                    {null, null, null},
+                    {},
+                    null,
+            };
+            for (Locale locale : new Locale[]{Locale.FRENCH, Locale.ENGLISH}) {
+                final MessageTemplates templates = MessageTemplates.load(
+                        new File(output, "language_" + locale + "." + MessageTemplates.EXTENSION).toURI().toURL(),
+                        locale);
+                final Properties merged = new Properties();
+                final Reader reader = Files.newReader(new File(output, "language_" + locale + ".properties"),
+                                                      Charsets.ISO_8859_1);
+                try {
+                    merged.load(reader);
+                } finally {
+                    reader.close();
+                }
+                assertEquals(PATTERNS.length, merged.size());
+                for (Map.Entry<Object, Object> entry : merged.entrySet()) {
+                    final String key = (String) entry.getKey();
+                    final MessageFormat expected = new MessageFormat((String) entry.getValue(), locale);
+                    assertEquals(expected.toPattern(),
+                                 new MessageFormat(templates.get(key).toString(), locale).toPattern());
+                    for (Object[] values : arguments) {
+                        String message;
+                        try {
+                            message = expected.format(values);
+                        } catch (IllegalArgumentException e) {
+                            message = e.getClass().getName();
+                        }
+                        String formatted;
+                        try {
+                            formatted = templates.format(key, values);
+                        } catch (IllegalArgumentException e) {
+                            formatted = e.getClass().getName();
+                        }
+                        assertEquals(key + " " + entry.getValue(), message, formatted);
+                    }
+                }
+                assertNull(templates.get("lang.missing"));
+                try {
+                    templates.format("lang.missing");
+                    fail("Missing template");
+                } catch (MissingResourceException e) {
+                    assertEquals("lang.missing", e.getKey());
+                }
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
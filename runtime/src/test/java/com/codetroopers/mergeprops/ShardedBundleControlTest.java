@@ -0,0 +1,72 @@
+package com.codetroopers.mergeprops;
+
+import com.codetroopers.maven.mergeprops.Merge;
+import com.codetroopers.maven.mergeprops.MergeProperty;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+import static org.junit.Assert.*;
+
+public class ShardedBundleControlTest {
+    @Test
+    public void testLoadsOnlyTheShardsOfTheKeysAskedFor() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final File l10n = new File(directory, "l10n");
+            assertTrue(l10n.mkdirs());
+            Files.write("lang.hello=Hello\nlang.bye=Bye\n", new File(l10n, "lang.properties"), Charsets.ISO_8859_1);
+            Files.write("lang.hello=Bonjour\nlang.bye=Bye\n", new File(l10n, "lang_fr.properties"),
+                        Charsets.ISO_8859_1);
+            Files.write("checkout.pay=Pay\n", new File(l10n, "checkout.properties"), Charsets.ISO_8859_1);
+            Files.write("checkout.pay=Payer\n", new File(l10n, "checkout_fr.properties"), Charsets.ISO_8859_1);
+            final Merge merge = new Merge();
+            merge.setTarget("language.properties");
+            merge.setPattern("l10n/*.properties");
+            merge.setOmitBaseLocaleValues(true);
+            merge.setShardByPrefix(true);
+            for (String format : new String[]{"properties", "binary"}) {
+                final File output = new File(directory, format);
+                merge.setFormat(format);
+                new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog()).merge();
+                final String suffix = format.equals("binary") ? BinaryBundleControl.EXTENSION : format;
+                assertEquals(Sets.newHashSet("language.shards", "language-0." + suffix, "language-1." + suffix,
+                                             "language_fr.shards", "language-0_fr." + suffix,
+                                             "language-1_fr." + suffix),
+                             Sets.newHashSet(output.list()));
+
+                final ClassLoader loader = new URLClassLoader(new URL[]{output.toURI().toURL()}, null);
+                final ResourceBundle bundle = ResourceBundle.getBundle("language", Locale.FRENCH, loader,
+                                                                       new ShardedBundleControl());
+                assertTrue(bundle instanceof ShardedBundle);
+                assertEquals("Payer", bundle.getString("checkout.pay"));
+                assertEquals(1, ((ShardedBundle) bundle).loadedShards());
+                assertEquals("Bonjour", bundle.getString("lang.hello"));
+                // left out of the french shard, from the parent bundle
+                assertEquals("Bye", bundle.getString("lang.bye"));
+                assertEquals(2, ((ShardedBundle) bundle).loadedShards());
+                assertEquals(Sets.newHashSet("lang.hello", "lang.bye", "checkout.pay"),
+                             Sets.newHashSet(Collections.list(bundle.getKeys())));
+                try {
+                    bundle.getString("other.key");
+                    fail("Missing key");
+                } catch (MissingResourceException e) {
+                    assertEquals("other.key", e.getKey());
+                }
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a bundle in the binary format read by the {@code BinaryBundleControl} of the runtime module, which looks
+ * keys up in the file itself instead of parsing it into a table :
+ * <pre>
+ *     int magic, int count
+ *     count times : int key offset, int value offset, sorted by key
+ *     the string pool, every distinct key and value once
+ * </pre>
+ * Strings are written as their length in chars, a variable length integer of 7 bits groups (least significant
+ * first), then their chars in modified UTF-8, on one to three bytes each. Offsets are counted from the start of the
+ * file, integers are big-endian. The same bundle always gives the same bytes.
+ */
+public final class BinaryBundleWriter {
+    /**
+     * "MPB" and the version of the format.
+     */
+    public static final int MAGIC = 0x4d504201;
+    public static final String EXTENSION = "bundle";
+
+    private BinaryBundleWriter() {
+    }
+
+    public static byte[] write(final Bundle bundle) {
+        final List<String> keys = new ArrayList<String>(bundle.keys());
+        Collections.sort(keys);
+        final int poolStart = 8 + 8 * keys.size();
+        final BinaryOutput pool = new BinaryOutput();
+        final Map<String, Integer> offsets = new HashMap<String, Integer>(keys.size() * 2);
+        final BinaryOutput out = new BinaryOutput();
+        out.writeInt(MAGIC);
+        out.writeInt(keys.size());
+        for (String key : keys) {
+            out.writeInt(poolStart + intern(pool, offsets, key));
+            out.writeInt(poolStart + intern(pool, offsets, bundle.get(key)));
+        }
+        out.write(pool.toByteArray(), 0, pool.size());
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the offset of the string in the pool, where it is written the first time only
+     */
+    private static int intern(final BinaryOutput pool, final Map<String, Integer> offsets, final String value) {
+        Integer offset = offsets.get(value);
+        if (offset == null) {
+            offset = pool.size();
+            offsets.put(value, offset);
+            pool.writeString(value);
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Writes variable length integers and strings : the length in chars, then each char on one to three bytes, as
+ * the modified UTF-8 of {@link java.io.DataOutput#writeUTF(String)} but without its 64 KiB limit. Integers are
+ * big-endian.
+ */
+final class BinaryOutput extends ByteArrayOutputStream {
+    void writeInt(final int value) {
+        write(value >>> 24);
+        write(value >>> 16);
+        write(value >>> 8);
+        write(value);
+    }
+
+    void writeLong(final long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    void writeVarInt(final int value) {
+        int remaining = value;
+        while ((remaining & ~0x7f) != 0) {
+            write((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        write(remaining);
+    }
+
+    void writeByteArray(final byte[] bytes) {
+        writeVarInt(bytes.length);
+        write(bytes, 0, bytes.length);
+    }
+
+    void writeString(final String value) {
+        writeVarInt(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c != 0 && c < 0x80) {
+                write(c);
+            } else if (c < 0x800) {
+                write(0xc0 | (c >> 6));
+                write(0x80 | (c & 0x3f));
+            } else {
+                write(0xe0 | (c >> 12));
+                write(0x80 | ((c >> 6) & 0x3f));
+                write(0x80 | (c & 0x3f));
+            }
+        }
+    }
+}
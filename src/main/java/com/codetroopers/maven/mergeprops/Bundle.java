@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The keys and values of a bundle, in the order their keys have first been put.
+ * Unlike {@link java.util.Properties} it is not synchronized and only holds strings, a bundle is only ever written
+ * by a single thread at a time.
+ */
+public class Bundle implements Iterable<Map.Entry<String, String>> {
+    private final Map<String, String> entries;
+
+    public Bundle() {
+        entries = new LinkedHashMap<String, String>();
+    }
+
+    public Bundle(final int expectedSize) {
+        entries = new LinkedHashMap<String, String>(Math.max(16, expectedSize * 4 / 3 + 1));
+    }
+
+    /**
+     * Puts the value, a key already held keeps its position.
+     *
+     * @return the previous value of the key
+     */
+    public String put(final String key, final String value) {
+        return entries.put(key, value);
+    }
+
+    public void putAll(final Bundle bundle) {
+        entries.putAll(bundle.entries);
+    }
+
+    public String get(final String key) {
+        return entries.get(key);
+    }
+
+    public boolean containsKey(final String key) {
+        return entries.containsKey(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return the keys, in insertion order
+     */
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Iterates over the entries in insertion order, {@link Map.Entry#setValue(Object)} updates the bundle.
+     */
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+        return entries.entrySet().iterator();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof Bundle && entries.equals(((Bundle) o).entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return entries.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return entries.toString();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the entries of an input file in a given format. The entries are streamed to a {@link Handler}, which checks
+ * their keys and escapes their values as for properties files.
+ * Implementations other than the built-in ones (properties, json, yaml and xliff) are chosen with the
+ * {@code inputFormat} of a merge, by class name : they must have a public no-arg constructor and be thread safe.
+ */
+public interface BundleSource {
+    /**
+     * Receives the entries in the order of the file.
+     */
+    interface Handler {
+        void property(String key, String value) throws MojoFailureException;
+    }
+
+    /**
+     * @param configured the encoding of the merge
+     * @return the charset the files are decoded with
+     */
+    Charset charset(Charset configured);
+
+    /**
+     * @throws IllegalArgumentException when the content of the file is malformed
+     */
+    void read(Reader reader, Handler handler) throws IOException, MojoFailureException;
+}
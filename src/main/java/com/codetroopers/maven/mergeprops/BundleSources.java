@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The built-in {@link BundleSource}s, and the choice of the source of each file.
+ */
+final class BundleSources {
+    static final BundleSource PROPERTIES = new BundleSource() {
+        @Override
+        public Charset charset(final Charset configured) {
+            return configured;
+        }
+
+        @Override
+        public void read(final Reader reader, final Handler handler) throws IOException, MojoFailureException {
+            PropertiesParser.parse(reader, handler);
+        }
+    };
+    static final BundleSource JSON = new JsonSource();
+    static final BundleSource YAML = new YamlSource();
+    static final BundleSource XLIFF = new XliffSource();
+
+    private static final Map<String, BundleSource> BY_NAME = ImmutableMap.of(
+            "properties", PROPERTIES, "json", JSON, "yaml", YAML, "xliff", XLIFF);
+    private static final Map<String, BundleSource> BY_EXTENSION = ImmutableMap.<String, BundleSource>builder()
+            .put("json", JSON).put("yml", YAML).put("yaml", YAML).put("xlf", XLIFF).put("xliff", XLIFF).build();
+
+    private BundleSources() {
+    }
+
+    /**
+     * @return the source configured by the merge, {@code null} when the source of each file depends on its extension
+     */
+    static BundleSource forMerge(final Merge merge) throws MojoExecutionException {
+        final String inputFormat = merge.getInputFormat();
+        if (inputFormat == null) {
+            return null;
+        }
+        final BundleSource builtIn = BY_NAME.get(inputFormat.toLowerCase(Locale.ENGLISH));
+        if (builtIn != null) {
+            return builtIn;
+        }
+        try {
+            return Class.forName(inputFormat, true, BundleSources.class.getClassLoader())
+                        .asSubclass(BundleSource.class).newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new MojoExecutionException("Invalid input format: " + inputFormat
+                                             + ", expected properties, json, yaml, xliff or a BundleSource class", e);
+        } catch (ClassCastException e) {
+            throw new MojoExecutionException("Input format " + inputFormat + " is not a BundleSource", e);
+        } catch (InstantiationException e) {
+            throw new MojoExecutionException("Could not create input format: " + inputFormat, e);
+        } catch (IllegalAccessException e) {
+            throw new MojoExecutionException("Could not create input format: " + inputFormat, e);
+        }
+    }
+
+    /**
+     * @return the source of the file according to its extension, properties for the unknown ones
+     */
+    static BundleSource forFile(final String propertyFileName) {
+        final String extension = propertyFileName.substring(propertyFileName.lastIndexOf('.') + 1);
+        final BundleSource source = BY_EXTENSION.get(extension.toLowerCase(Locale.ENGLISH));
+        return source != null ? source : PROPERTIES;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The files below a directory, scanned once and shared by all the merges of a mojo execution.
+ * The walk skips the directories every merge excludes, and the ones none of their patterns can reach. Files are
+ * kept sorted by path, which gives every merge the same, platform independent, file order.
+ */
+public class FileIndex {
+    /**
+     * Excluded by every merge unless its {@code defaultExcludes} is disabled.
+     */
+    static final List<String> DEFAULT_EXCLUDES = Collections.unmodifiableList(Arrays.asList(
+            "**/target/**", "**/node_modules/**", "**/.git/**", "**/.svn/**", "**/.hg/**", "**/.idea/**"));
+
+    private final File directory;
+    private final List<String> paths;
+    private final List<String[]> names;
+    private final List<File> directories;
+
+    private FileIndex(final File directory, final List<String> paths, final List<String[]> names,
+                      final List<File> directories) {
+        this.directory = directory;
+        this.paths = paths;
+        this.names = names;
+        this.directories = directories;
+    }
+
+    /**
+     * Scans the files of the directory that may be included by one of the given merges.
+     */
+    public static FileIndex scan(final File directory, final Collection<Merge> merges) throws MojoExecutionException {
+        final List<Filter> filters = new ArrayList<Filter>(merges.size());
+        for (Merge merge : merges) {
+            filters.add(new Filter(merge));
+        }
+        final List<String> paths = new ArrayList<String>();
+        final List<File> directories = new ArrayList<File>();
+        if (directory.isDirectory()) {
+            try {
+                Files.walkFileTree(directory.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                                   new Walker(directory.toPath(), filters, paths, directories));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not scan directory: " + directory.getAbsolutePath(), e);
+            }
+        }
+        Collections.sort(paths);
+        final List<String[]> names = new ArrayList<String[]>(paths.size());
+        for (String path : paths) {
+            names.add(split(path));
+        }
+        return new FileIndex(directory, paths, names, directories);
+    }
+
+    private static String[] split(final String path) {
+        return path.isEmpty() ? new String[0] : path.split(Pattern.quote(File.separator));
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int size() {
+        return paths.size();
+    }
+
+    /**
+     * @return the directories that have been walked, the scanned directory included
+     */
+    public List<File> getDirectories() {
+        return Collections.unmodifiableList(directories);
+    }
+
+    /**
+     * @return the paths of the files included by the merge, relative to the directory
+     */
+    public List<String> getFileNames(final Merge merge) {
+        final Filter filter = new Filter(merge);
+        final List<String> fileNames = new ArrayList<String>();
+        for (int i = 0; i < paths.size(); i++) {
+            if (filter.includes(names.get(i))) {
+                fileNames.add(paths.get(i));
+            }
+        }
+        return fileNames;
+    }
+
+    private static final class Walker extends SimpleFileVisitor<Path> {
+        private final Path root;
+        private final List<Filter> filters;
+        private final List<String> paths;
+        private final List<File> directories;
+
+        Walker(final Path root, final List<Filter> filters, final List<String> paths, final List<File> directories) {
+            this.root = root;
+            this.filters = filters;
+            this.paths = paths;
+            this.directories = directories;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+            final String[] dirNames = split(root.relativize(dir).toString());
+            for (Filter filter : filters) {
+                if (filter.mayIncludeBelow(dirNames)) {
+                    directories.add(dir.toFile());
+                    return FileVisitResult.CONTINUE;
+                }
+            }
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            if (attrs.isRegularFile()) {
+                paths.add(root.relativize(file).toString());
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+            // unreadable files and symbolic link loops are skipped
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    /**
+     * The compiled patterns of a merge.
+     */
+    private static final class Filter {
+        private final PathPattern include;
+        private final List<PathPattern> excludes = new ArrayList<PathPattern>();
+
+        Filter(final Merge merge) {
+            include = new PathPattern(merge.getPattern() != null ? merge.getPattern() : "**");
+            if (merge.getExcludes() != null) {
+                for (String exclude : merge.getExcludes()) {
+                    excludes.add(new PathPattern(exclude));
+                }
+            }
+            if (merge.getDefaultExcludes()) {
+                for (String exclude : DEFAULT_EXCLUDES) {
+                    excludes.add(new PathPattern(exclude));
+                }
+            }
+        }
+
+        boolean includes(final String[] path) {
+            if (!include.matches(path)) {
+                return false;
+            }
+            for (PathPattern exclude : excludes) {
+                if (exclude.matches(path)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean mayIncludeBelow(final String[] directory) {
+            if (!include.mayMatchBelow(directory)) {
+                return false;
+            }
+            for (PathPattern exclude : excludes) {
+                if (exclude.matchesAllBelow(directory)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import java.util.Arrays;
+
+/**
+ * The dotted key of the current value of a nested document, the key of each nesting level being appended to the
+ * key of its parent.
+ */
+final class FlatKeys {
+    private final StringBuilder key = new StringBuilder();
+    private int[] lengths = new int[16];
+    private int depth;
+
+    /**
+     * Enters the value of the given name.
+     */
+    void push(final String name) {
+        if (depth == lengths.length) {
+            lengths = Arrays.copyOf(lengths, depth * 2);
+        }
+        lengths[depth++] = key.length();
+        if (depth > 1) {
+            key.append('.');
+        }
+        key.append(name);
+    }
+
+    void pop() {
+        key.setLength(lengths[--depth]);
+    }
+
+    /**
+     * @return the key of the child of the current value with the given name
+     */
+    String child(final String name) {
+        if (depth == 0) {
+            return name;
+        }
+        final int length = key.length();
+        final String child = key.append('.').append(name).toString();
+        key.setLength(length);
+        return child;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The checked and escaped entries of the input files, reused as long as a file keeps its length and last
+ * modification date. The watch goal keeps it between two merges so that only the changed files are read again.
+ * <p/>
+ * It may also be persisted in a directory, one binary entry per file and checking, so that it survives the builds :
+ * an entry whose file has been touched but not changed is still reused, its content hash being recorded. The
+ * directory is kept under a size limit by evicting the least recently used entries. The persisted cache is only an
+ * optimization, an entry that can not be read or written is ignored and the file is read again.
+ */
+class FragmentCache {
+    /**
+     * "MPC" and the version of the entry format, to be increased whenever the format or the checking and escaping
+     * of the entries change.
+     */
+    private static final int MAGIC = 0x4d504301;
+    private static final String EXTENSION = ".bin";
+
+    private final ConcurrentMap<String, Fragment> fragments;
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * A cache kept in memory only.
+     */
+    FragmentCache() {
+        this(true, null, 0);
+    }
+
+    /**
+     * @param retain    whether the entries should be kept in memory, when the cache is used by several merges
+     * @param directory the directory the entries are persisted in, {@code null} to keep them in memory only
+     * @param maxBytes  the size the directory is brought back under by {@link #evict()}
+     */
+    FragmentCache(final boolean retain, final File directory, final long maxBytes) {
+        this.fragments = retain ? new ConcurrentHashMap<String, Fragment>() : null;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the entries of the file as read for the given merge, {@code null} when the file changed since
+     */
+    Bundle get(final Merge merge, final File file, final long length, final long lastModified) {
+        final String key = key(merge, file);
+        if (fragments != null) {
+            final Fragment fragment = fragments.get(key);
+            if (fragment != null && fragment.length == length && fragment.lastModified == lastModified) {
+                return fragment.entries;
+            }
+        }
+        if (directory == null) {
+            return null;
+        }
+        final File entry = entryFile(key);
+        Fragment fragment = read(entry, key);
+        if (fragment == null) {
+            return null;
+        }
+        if (fragment.length != length || fragment.lastModified != lastModified) {
+            // touched, checkouts and rebuilds change the modification date of unchanged files
+            final byte[] hash = hash(file);
+            if (hash == null || fragment.length != length || !Arrays.equals(hash, fragment.hash)) {
+                return null;
+            }
+            fragment = new Fragment(length, lastModified, hash, fragment.entries);
+            write(entry, key, fragment);
+        } else {
+            // the modification date of an entry is its last use
+            entry.setLastModified(System.currentTimeMillis());
+        }
+        if (fragments != null) {
+            fragments.put(key, fragment);
+        }
+        return fragment.entries;
+    }
+
+    /**
+     * @param length       the length of the file before it has been read
+     * @param lastModified the modification date of the file before it has been read
+     */
+    void put(final Merge merge, final File file, final long length, final long lastModified, final Bundle entries) {
+        final String key = key(merge, file);
+        byte[] hash = null;
+        if (directory != null) {
+            hash = hash(file);
+            // a file changed while it was read is not persisted, it will be read again
+            if (hash != null && file.length() == length && file.lastModified() == lastModified) {
+                write(entryFile(key), key, new Fragment(length, lastModified, hash, entries));
+            }
+        }
+        if (fragments != null) {
+            fragments.put(key, new Fragment(length, lastModified, hash, entries));
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries of the directory until their total size is under the limit.
+     */
+    void evict() {
+        if (directory == null) {
+            return;
+        }
+        final File[] entries = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && file.getName().endsWith(EXTENSION);
+            }
+        });
+        if (entries == null) {
+            return;
+        }
+        final long[] lastModified = new long[entries.length];
+        final Integer[] order = new Integer[entries.length];
+        long total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            // read once, the comparator must see stable dates
+            lastModified[i] = entries[i].lastModified();
+            order[i] = i;
+            total += entries[i].length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer left, final Integer right) {
+                return Long.compare(lastModified[left], lastModified[right]);
+            }
+        });
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            final File entry = entries[order[i]];
+            final long entryLength = entry.length();
+            if (entry.delete()) {
+                total -= entryLength;
+            }
+        }
+    }
+
+    /**
+     * The key checking of a file depends on the name of the file and the key check exclusions of the merge it is read
+     * for, its reading on the input format and the encoding. Merges into other targets share the entries of the files
+     * they have in common.
+     */
+    private static String key(final Merge merge, final File file) {
+        return merge.getInputFormat() + File.pathSeparator + merge.getEncoding()
+               + File.pathSeparator + Arrays.toString(merge.getExcludeKeyCheck())
+               + File.pathSeparator + file.getAbsolutePath();
+    }
+
+    private File entryFile(final String key) {
+        return new File(directory, Hashing.murmur3_128().hashString(key, Charsets.UTF_8).toString() + EXTENSION);
+    }
+
+    private static byte[] hash(final File file) {
+        try {
+            return Files.hash(file, Hashing.murmur3_128()).asBytes();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the fragment persisted in the given entry, {@code null} if there is none or if it can not be read
+     */
+    private static Fragment read(final File entry, final String key) {
+        if (!entry.isFile()) {
+            return null;
+        }
+        try {
+            final EntryInput in = new EntryInput(Files.toByteArray(entry));
+            // the key guards against entry name collisions
+            if (in.readInt() != MAGIC || !key.equals(in.readString())) {
+                return null;
+            }
+            final long length = in.readLong();
+            final long lastModified = in.readLong();
+            final byte[] hash = in.readByteArray();
+            final int size = in.readLength();
+            final Bundle entries = new Bundle(size);
+            for (int i = 0; i < size; i++) {
+                entries.put(in.readString(), in.readString());
+            }
+            return new Fragment(length, lastModified, hash, entries);
+        } catch (IOException e) {
+            return null;
+        } catch (IndexOutOfBoundsException e) {
+            // a truncated entry
+            return null;
+        }
+    }
+
+    private void write(final File entry, final String key, final Fragment fragment) {
+        final BinaryOutput out = new BinaryOutput();
+        out.writeInt(MAGIC);
+        out.writeString(key);
+        out.writeLong(fragment.length);
+        out.writeLong(fragment.lastModified);
+        out.writeByteArray(fragment.hash);
+        out.writeVarInt(fragment.entries.size());
+        for (Map.Entry<String, String> property : fragment.entries) {
+            out.writeString(property.getKey());
+            out.writeString(property.getValue());
+        }
+        try {
+            if (directory.isDirectory() || directory.mkdirs() || directory.isDirectory()) {
+                OutputFiles.replace(entry, out.toByteArray());
+            }
+        } catch (IOException e) {
+            // the file will be read again by the next build
+        }
+    }
+
+    private static final class Fragment {
+        private final long length;
+        private final long lastModified;
+        private final byte[] hash;
+        private final Bundle entries;
+
+        Fragment(final long length, final long lastModified, final byte[] hash, final Bundle entries) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * Reads what {@link BinaryOutput} writes.
+     */
+    private static final class EntryInput {
+        private final byte[] bytes;
+        private int position;
+
+        EntryInput(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int read() {
+            return bytes[position++] & 0xff;
+        }
+
+        int readInt() {
+            return read() << 24 | read() << 16 | read() << 8 | read();
+        }
+
+        long readLong() {
+            return (long) readInt() << 32 | readInt() & 0xffffffffL;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final int b = read();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        /**
+         * @throws IndexOutOfBoundsException if the entry is truncated
+         */
+        private int readLength() {
+            final int length = readVarInt();
+            if (length < 0 || length > bytes.length - position) {
+                throw new IndexOutOfBoundsException("Truncated entry");
+            }
+            return length;
+        }
+
+        byte[] readByteArray() {
+            final int length = readLength();
+            final byte[] read = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return read;
+        }
+
+        String readString() {
+            final char[] chars = new char[readLength()];
+            for (int i = 0; i < chars.length; i++) {
+                final int b = read();
+                if (b < 0x80) {
+                    chars[i] = (char) b;
+                } else if (b < 0xe0) {
+                    chars[i] = (char) ((b & 0x1f) << 6 | read() & 0x3f);
+                } else {
+                    chars[i] = (char) ((b & 0x0f) << 12 | (read() & 0x3f) << 6 | read() & 0x3f);
+                }
+            }
+            return new String(chars);
+        }
+    }
+}
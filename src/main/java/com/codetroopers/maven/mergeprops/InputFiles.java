@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * Reads the input files through their {@link FileChannel}, decoding whole buffers at once. Files are read through a
+ * heap buffer rather than memory-mapped : a mapping is only released by the garbage collector, and keeps the file
+ * locked on Windows meanwhile, which would prevent saving it while the watch goal runs.
+ */
+final class InputFiles {
+    private static final int BUFFER_SIZE = 8192;
+
+    private InputFiles() {
+    }
+
+    static Charset charset(final Merge merge) throws MojoExecutionException {
+        try {
+            return Charset.forName(merge.getEncoding());
+        } catch (IllegalCharsetNameException e) {
+            throw new MojoExecutionException("Invalid encoding: " + merge.getEncoding(), e);
+        } catch (UnsupportedCharsetException e) {
+            throw new MojoExecutionException("Unsupported encoding: " + merge.getEncoding(), e);
+        }
+    }
+
+    /**
+     * Opens a reader decoding the file with the given charset. Malformed input is reported as a
+     * {@link java.nio.charset.CharacterCodingException} instead of being replaced, a leading byte order mark is
+     * skipped.
+     */
+    static Reader open(final File file, final Charset charset) throws IOException {
+        final FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size() + 1, BUFFER_SIZE));
+            buffer.limit(0);
+            return new ChannelReader(channel, buffer, charset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static final class ChannelReader extends Reader {
+        private final FileChannel channel;
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder;
+        private boolean endOfInput;
+        private boolean flushing;
+        private boolean flushed;
+        private boolean started;
+
+        ChannelReader(final FileChannel channel, final ByteBuffer bytes, final Charset charset) {
+            this.channel = channel;
+            this.bytes = bytes;
+            this.decoder = charset.newDecoder()
+                                  .onMalformedInput(CodingErrorAction.REPORT)
+                                  .onUnmappableCharacter(CodingErrorAction.REPORT);
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            if (flushed) {
+                return -1;
+            }
+            final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            while (out.hasRemaining()) {
+                final CoderResult result = flushing ? decoder.flush(out) : decoder.decode(bytes, out, endOfInput);
+                if (result.isUnderflow()) {
+                    if (flushing) {
+                        flushed = true;
+                        break;
+                    }
+                    if (endOfInput) {
+                        flushing = true;
+                    } else if (out.position() > off) {
+                        break;
+                    } else {
+                        fill();
+                    }
+                    continue;
+                }
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (result.isOverflow()) {
+                    break;
+                }
+            }
+            int read = out.position() - off;
+            if (!started && read > 0) {
+                started = true;
+                if (cbuf[off] == '\uFEFF') {
+                    System.arraycopy(cbuf, off + 1, cbuf, off, --read);
+                    if (read == 0) {
+                        return read(cbuf, off, len);
+                    }
+                }
+            }
+            return read == 0 && flushed ? -1 : read;
+        }
+
+        private void fill() throws IOException {
+            bytes.compact();
+            final int read = channel.read(bytes);
+            bytes.flip();
+            endOfInput = read < 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
+
+/**
+ * Streams the values of a JSON document, whose root must be an object, under the dotted path of their members :
+ * <code>{"lang": {"hello": "Hello"}}</code> gives <code>lang.hello=Hello</code>. Array elements are keyed by their
+ * index, numbers and booleans are kept as written and null values are left out. Files are read as UTF-8.
+ */
+final class JsonSource implements BundleSource {
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][-+]?[0-9]+)?");
+
+    @Override
+    public Charset charset(final Charset configured) {
+        return Charsets.UTF_8;
+    }
+
+    @Override
+    public void read(final Reader reader, final Handler handler) throws IOException, MojoFailureException {
+        new Parser(reader, handler).parse();
+    }
+
+    private static final class Parser {
+        private final Reader reader;
+        private final Handler handler;
+        private final FlatKeys keys = new FlatKeys();
+        private final StringBuilder text = new StringBuilder();
+        private final char[] in = new char[8192];
+        private int inLimit;
+        private int inOffset;
+        private int line = 1;
+
+        Parser(final Reader reader, final Handler handler) {
+            this.reader = reader;
+            this.handler = handler;
+        }
+
+        void parse() throws IOException, MojoFailureException {
+            if (skipWhitespace() != '{') {
+                throw error("the root of the document must be an object");
+            }
+            object();
+            if (skipWhitespace() != -1) {
+                throw error("unexpected content after the root object");
+            }
+        }
+
+        private void value(final String name) throws IOException, MojoFailureException {
+            final int c = skipWhitespace();
+            if (c == '{') {
+                keys.push(name);
+                object();
+                keys.pop();
+            } else if (c == '[') {
+                keys.push(name);
+                array();
+                keys.pop();
+            } else if (c == '"') {
+                next();
+                handler.property(keys.child(name), string());
+            } else {
+                final String literal = literal();
+                if (!"null".equals(literal)) {
+                    handler.property(keys.child(name), literal);
+                }
+            }
+        }
+
+        private void object() throws IOException, MojoFailureException {
+            next();
+            if (skipWhitespace() == '}') {
+                next();
+                return;
+            }
+            while (true) {
+                if (skipWhitespace() != '"') {
+                    throw error("expected a member name");
+                }
+                next();
+                final String name = string();
+                if (skipWhitespace() != ':') {
+                    throw error("expected ':'");
+                }
+                next();
+                value(name);
+                final int c = skipWhitespace();
+                next();
+                if (c == '}') {
+                    return;
+                } else if (c != ',') {
+                    throw error("expected ',' or '}'");
+                }
+            }
+        }
+
+        private void array() throws IOException, MojoFailureException {
+            next();
+            if (skipWhitespace() == ']') {
+                next();
+                return;
+            }
+            for (int index = 0; ; index++) {
+                value(String.valueOf(index));
+                final int c = skipWhitespace();
+                next();
+                if (c == ']') {
+                    return;
+                } else if (c != ',') {
+                    throw error("expected ',' or ']'");
+                }
+            }
+        }
+
+        /**
+         * Reads a string whose opening quote has been read.
+         */
+        private String string() throws IOException {
+            text.setLength(0);
+            while (true) {
+                final int c = next();
+                if (c == '"') {
+                    return text.toString();
+                } else if (c == '\\') {
+                    text.append(escape());
+                } else if (c < 0x20) {
+                    throw error(c == -1 ? "unterminated string" : "unescaped control character in string");
+                } else {
+                    text.append((char) c);
+                }
+            }
+        }
+
+        private char escape() throws IOException {
+            final int c = next();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    return (char) c;
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    int value = 0;
+                    for (int i = 0; i < 4; i++) {
+                        final int digit = Character.digit(next(), 16);
+                        if (digit < 0) {
+                            throw error("malformed \\uXXXX escape");
+                        }
+                        value = value << 4 | digit;
+                    }
+                    return (char) value;
+                default:
+                    throw error("invalid escape");
+            }
+        }
+
+        /**
+         * Reads a number, true, false or null.
+         */
+        private String literal() throws IOException {
+            text.setLength(0);
+            int c;
+            while ((c = peek()) >= 0 && (Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.')) {
+                text.append((char) next());
+            }
+            final String literal = text.toString();
+            if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null")
+                && !NUMBER.matcher(literal).matches()) {
+                throw error(literal.isEmpty() ? "expected a value" : "invalid value " + literal);
+            }
+            return literal;
+        }
+
+        /**
+         * @return the next character which is not whitespace, without consuming it
+         */
+        private int skipWhitespace() throws IOException {
+            int c;
+            while ((c = peek()) == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                next();
+            }
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (inOffset == inLimit) {
+                inLimit = reader.read(in);
+                inOffset = 0;
+                if (inLimit <= 0) {
+                    inLimit = 0;
+                    return -1;
+                }
+            }
+            return in[inOffset];
+        }
+
+        private int next() throws IOException {
+            final int c = peek();
+            if (c >= 0) {
+                inOffset++;
+                if (c == '\n') {
+                    line++;
+                }
+            }
+            return c;
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException("Malformed JSON, " + message + " at line " + line);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Joiner;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The key checking of a merge : every key of a file must start with the prefix of the file name and a dot, unless
+ * that prefix matches one of the key check exclusions. The exclusions are compiled once per merge, and all the
+ * invalid keys of a file are reported at once.
+ */
+final class KeyCheck {
+    private final Pattern[] exclusions;
+
+    /**
+     * @param excludeKeyCheck the regular expressions matching the prefixes of the files not to check, may be
+     *                        {@code null}
+     */
+    KeyCheck(final String[] excludeKeyCheck) {
+        exclusions = new Pattern[excludeKeyCheck != null ? excludeKeyCheck.length : 0];
+        for (int i = 0; i < exclusions.length; i++) {
+            exclusions[i] = Pattern.compile(excludeKeyCheck[i]);
+        }
+    }
+
+    /**
+     * @return the prefix, dot included, every key of the given file must start with, {@code null} when the file is
+     * excluded from key checking
+     */
+    String prefix(final String propertyFileName, final Log log) {
+        if (propertyFileName == null) {
+            throw new NullPointerException("PropertyFileName can not be null ! ");
+        }
+        final String prefixToConsider = MergeProperty.extractFilePrefix(propertyFileName);
+        if (log.isDebugEnabled()) {
+            log.debug("Prefix to consider : " + prefixToConsider);
+        }
+        for (Pattern exclusion : exclusions) {
+            if (exclusion.matcher(prefixToConsider).matches()) {
+                log.info("Found propertyFileName without prefix checking, including... [" + propertyFileName + "]");
+                return null;
+            }
+        }
+        return prefixToConsider + ".";
+    }
+
+    /**
+     * Checks every key, in a single pass over the keys.
+     *
+     * @param propertyFileName the file the keys come from, {@code null} if unknown
+     */
+    static void check(final String propertyFileName, final String prefix, final Iterable<String> keys)
+            throws MojoFailureException {
+        List<String> invalidKeys = null;
+        for (String key : keys) {
+            if (!key.startsWith(prefix)) {
+                if (invalidKeys == null) {
+                    invalidKeys = new ArrayList<String>();
+                }
+                invalidKeys.add(key);
+            }
+        }
+        if (invalidKeys != null) {
+            throw invalidKeys(propertyFileName, prefix, invalidKeys);
+        }
+    }
+
+    static MojoFailureException invalidKeys(final String propertyFileName, final String prefix,
+                                            final List<String> invalidKeys) {
+        return new MojoFailureException(
+                invalidKeys.size() + " invalid property key(s) found" + (propertyFileName != null
+                                                                         ? " in " + propertyFileName : "")
+                + " [not beginning with " + prefix + "] :\n" + Joiner.on("\n").join(invalidKeys));
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Writes the Java source of a class holding the keys of a merge as {@code int} constants, numbered from 0 in key
+ * order, and a {@code Messages} helper that resolves every key of a loaded bundle once so that messages are looked up
+ * by number in an array instead of by key in a {@code Hashtable}. The constants are compile time constants, a typo
+ * fails the compilation of the code using them.
+ * <p/>
+ * The key names are held in string chunks (each key preceded by its length) rather than in an array initializer, so
+ * that the static initializer does not grow with the keys. The constant pool of the class still bounds the number of
+ * keys to {@link #MAX_KEYS}.
+ */
+final class KeysClassWriter {
+    static final int MAX_KEYS = 30000;
+    private static final Pattern CLASS_NAME =
+            Pattern.compile("(\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*\\.)*"
+                            + "\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*");
+    /**
+     * Chars of key names per string literal, a literal holds at most 65535 bytes of modified UTF-8.
+     */
+    private static final int CHUNK_LENGTH = 16000;
+    private static final Set<String> RESERVED_NAMES = new HashSet<String>(Arrays.asList("BASE_NAME", "KEY_COUNT",
+                                                                                       "KEYS"));
+
+    private KeysClassWriter() {
+    }
+
+    /**
+     * @param className the qualified name of the class
+     * @param baseName  the base name of the bundle
+     * @param keys      the keys of the bundle, in the order of their numbers
+     * @return the source of the class, in UTF-8
+     */
+    static byte[] write(final String className, final String baseName, final List<String> keys)
+            throws MojoExecutionException {
+        if (!CLASS_NAME.matcher(className).matches()) {
+            throw new MojoExecutionException("Invalid keys class name: " + className);
+        }
+        if (keys.size() > MAX_KEYS) {
+            throw new MojoExecutionException("Bundle " + baseName + " has " + keys.size()
+                                             + " keys, a keys class can not hold more than " + MAX_KEYS);
+        }
+        final int lastDot = className.lastIndexOf('.');
+        final String simpleName = className.substring(lastDot + 1);
+        final StringBuilder java = new StringBuilder();
+        final StringBuilder bundleName = new StringBuilder();
+        ascii(bundleName, baseName.replace("\\", "&#92;").replace("*/", "*&#47;"));
+        java.append("// Generated by merge-properties-maven-plugin from the ").append(bundleName)
+            .append(" bundle, do not edit.\n");
+        if (lastDot > 0) {
+            java.append("package ");
+            ascii(java, className.substring(0, lastDot));
+            java.append(";\n");
+        }
+        java.append("\n")
+            .append("import java.util.MissingResourceException;\n")
+            .append("import java.util.ResourceBundle;\n")
+            .append("\n")
+            .append("/**\n")
+            .append(" * The keys of the ").append(bundleName).append(" bundle, numbered from 0 in key order.\n")
+            .append(" * {@link #messages(ResourceBundle)} resolves them once, messages are then looked up by number.\n")
+            .append(" */\n")
+            .append("public final class ");
+        ascii(java, simpleName);
+        java.append(" {\n")
+            .append("    public static final String BASE_NAME = ").append(literal(baseName)).append(";\n")
+            .append("    public static final int KEY_COUNT = ").append(keys.size()).append(";\n");
+        final Set<String> names = new HashSet<String>(RESERVED_NAMES);
+        for (int i = 0; i < keys.size(); i++) {
+            String name = constantName(keys.get(i));
+            if (!names.add(name)) {
+                // the number of the key, then a counter should another key already have that name
+                String numbered = name + "_" + i;
+                for (int n = 2; !names.add(numbered); n++) {
+                    numbered = name + "_" + i + "_" + n;
+                }
+                name = numbered;
+            }
+            java.append("    /** ");
+            ascii(java, keys.get(i).replace("\\", "&#92;").replace("*/", "*&#47;"));
+            java.append(" */\n")
+                .append("    public static final int ");
+            ascii(java, name);
+            java.append(" = ").append(i).append(";\n");
+        }
+        java.append("\n")
+            .append("    private static final String[] KEYS = keys(");
+        int chunkLength = 0;
+        java.append('"');
+        for (String key : keys) {
+            if (chunkLength > 0 && chunkLength + key.length() > CHUNK_LENGTH) {
+                java.append("\",\n            \"");
+                chunkLength = 0;
+            }
+            escape(java, (char) key.length());
+            escape(java, key);
+            chunkLength += key.length() + 1;
+        }
+        java.append("\");\n")
+            .append("\n")
+            .append("    private ");
+        ascii(java, simpleName);
+        java.append("() {\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    /**\n")
+            .append("     * @return the key of the given number\n")
+            .append("     */\n")
+            .append("    public static String key(final int key) {\n")
+            .append("        return KEYS[key];\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    /**\n")
+            .append("     * Resolves every key of the bundle, from the bundle or its parents.\n")
+            .append("     */\n")
+            .append("    public static Messages messages(final ResourceBundle bundle) {\n")
+            .append("        final String[] values = new String[KEY_COUNT];\n")
+            .append("        for (int i = 0; i < KEY_COUNT; i++) {\n")
+            .append("            if (bundle.containsKey(KEYS[i])) {\n")
+            .append("                values[i] = bundle.getString(KEYS[i]);\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("        return new Messages(values);\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    private static String[] keys(final String... chunks) {\n")
+            .append("        final String[] keys = new String[KEY_COUNT];\n")
+            .append("        int key = 0;\n")
+            .append("        for (String chunk : chunks) {\n")
+            .append("            for (int i = 0; i < chunk.length(); key++) {\n")
+            .append("                final int length = chunk.charAt(i++);\n")
+            .append("                keys[key] = chunk.substring(i, i + length);\n")
+            .append("                i += length;\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("        return keys;\n")
+            .append("    }\n")
+            .append("\n")
+            .append("    /**\n")
+            .append("     * The messages of a bundle, indexed by key number.\n")
+            .append("     */\n")
+            .append("    public static final class Messages {\n")
+            .append("        private final String[] values;\n")
+            .append("\n")
+            .append("        private Messages(final String[] values) {\n")
+            .append("            this.values = values;\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        /**\n")
+            .append("         * @throws MissingResourceException if neither the bundle nor its parents hold the key\n")
+            .append("         */\n")
+            .append("        public String get(final int key) {\n")
+            .append("            final String value = values[key];\n")
+            .append("            if (value == null) {\n")
+            .append("                throw new MissingResourceException(\"Can't find resource for bundle \"\n")
+            .append("                                                   + BASE_NAME + \", key \" + KEYS[key],\n")
+            .append("                                                   BASE_NAME, KEYS[key]);\n")
+            .append("            }\n")
+            .append("            return value;\n")
+            .append("        }\n")
+            .append("\n")
+            .append("        public boolean contains(final int key) {\n")
+            .append("            return values[key] != null;\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("}\n");
+        return java.toString().getBytes(Charsets.UTF_8);
+    }
+
+    /**
+     * @return the upper case constant name of the key : {@code lang.helloWorld} gives {@code LANG_HELLO_WORLD}
+     */
+    static String constantName(final String key) {
+        final StringBuilder name = new StringBuilder(key.length() + 8);
+        char previous = '_';
+        for (int i = 0; i < key.length(); i++) {
+            final char c = key.charAt(i);
+            if (!Character.isJavaIdentifierPart(c) || c == '$' || Character.isIdentifierIgnorable(c)) {
+                if (previous != '_') {
+                    name.append('_');
+                    previous = '_';
+                }
+                continue;
+            }
+            if (Character.isUpperCase(c) && (Character.isLowerCase(previous) || Character.isDigit(previous))) {
+                name.append('_');
+            }
+            name.append(c);
+            previous = c;
+        }
+        if (name.length() > 1 && name.charAt(name.length() - 1) == '_') {
+            name.setLength(name.length() - 1);
+        }
+        if (name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0)) || "_".contentEquals(name)) {
+            name.insert(0, "KEY_");
+        }
+        return name.toString().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Appends text outside of a literal, non ASCII characters as unicode escapes and control characters as spaces.
+     */
+    private static void ascii(final StringBuilder java, final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c < 0x20) {
+                java.append(' ');
+            } else if (c < 0x7f) {
+                java.append(c);
+            } else {
+                java.append(String.format("\\u%04x", (int) c));
+            }
+        }
+    }
+
+    private static String literal(final String value) {
+        final StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+        escape(literal, value);
+        return literal.append('"').toString();
+    }
+
+    private static void escape(final StringBuilder java, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            escape(java, value.charAt(i));
+        }
+    }
+
+    /**
+     * Escapes everything but printable ASCII, so that the source does not depend on the encoding of the compiler.
+     * Control characters are escaped in octal, unicode escapes of line terminators being translated before parsing.
+     */
+    private static void escape(final StringBuilder java, final char c) {
+        if (c == '"' || c == '\\') {
+            java.append('\\').append(c);
+        } else if (c >= 0x20 && c < 0x7f) {
+            java.append(c);
+        } else if (c < 0x20) {
+            java.append(String.format("\\%03o", (int) c));
+        } else {
+            java.append(String.format("\\u%04x", (int) c));
+        }
+    }
+}
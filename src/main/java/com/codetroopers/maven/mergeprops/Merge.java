@@ -16,10 +16,11 @@
 
 package com.codetroopers.maven.mergeprops;
 
-import org.codehaus.plexus.util.DirectoryScanner;
+import org.apache.maven.plugin.MojoExecutionException;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -44,6 +45,18 @@ public class Merge {
      */
     private String pattern;
 
+    /**
+     * The patterns of the files to leave out of the merge
+     * @parameter
+     */
+    private String[] excludes;
+
+    /**
+     * Whether the build, dependency and SCM directories (target, node_modules, .git...) are left out of the merge
+     * @parameter
+     */
+    private Boolean defaultExcludes = true;
+
     /**
      * Whether the build should fail when the count between files does not match
      * @parameter
@@ -56,6 +69,110 @@ public class Merge {
      */
     private String[] excludeKeyCheck;
 
+    /**
+     * The encoding of the files to merge, ISO-8859-1 as expected by java.util.Properties by default
+     * @parameter
+     */
+    private String encoding = "ISO-8859-1";
+
+    /**
+     * Whether the keys of the final files should be sorted, otherwise they are written in the order of the input files
+     * @parameter
+     */
+    private Boolean sortKeys = true;
+
+    /**
+     * The line separator of the final files : LF, CRLF, CR or the separator itself
+     * @parameter
+     */
+    private String lineSeparator = "LF";
+
+    /**
+     * The encoding of the final files, characters it can not represent are written as unicode escapes.
+     * With ISO-8859-1 every non ASCII character is escaped, as done by java.util.Properties
+     * @parameter
+     */
+    private String outputEncoding = "ISO-8859-1";
+
+    /**
+     * The format of the files to merge : properties, json, yaml, xliff or the class name of a BundleSource. By default
+     * it is chosen by the extension of each file (.json, .yml, .yaml, .xlf, .xliff, properties otherwise)
+     * @parameter
+     */
+    private String inputFormat;
+
+    /**
+     * The format of the final files : properties, binary (read at runtime through the BinaryBundleControl of the
+     * merge-properties-runtime module) or both
+     * @parameter
+     */
+    private String format = "properties";
+
+    /**
+     * Whether every value should be parsed as a MessageFormat, malformed patterns failing the build and the keys
+     * whose locales use other arguments being reported
+     * @parameter
+     */
+    private Boolean validateMessageFormat = false;
+
+    /**
+     * Whether the values should also be written, once validated, as precompiled MessageFormat templates
+     * (language_fr.templates) read by the MessageTemplates of the merge-properties-runtime module
+     * @parameter
+     */
+    private Boolean templates = false;
+
+    /**
+     * The qualified name of the class generated with the keys of the merge as int constants and a lookup of the
+     * messages by those constants, none by default
+     * @parameter
+     */
+    private String keysClass;
+
+    /**
+     * Whether the locales of the merge should share a single instance of each distinct value, the duplication ratio
+     * being logged
+     * @parameter
+     */
+    private Boolean poolValues = false;
+
+    /**
+     * Whether the final files of the locales should leave out the keys whose value is the one of the base locale
+     * (the files without locale suffix), which is then written without the locale separator (language.properties)
+     * so that ResourceBundle falls back to it
+     * @parameter
+     */
+    private Boolean omitBaseLocaleValues = false;
+
+    /**
+     * Whether the final files of each locale should be split by key prefix (the part of the keys before their first
+     * dot) into shards (language-0_fr.properties, language-1_fr.properties...) listed by an index mapping each prefix
+     * to its shard (language_fr.shards), read by the ShardedBundleControl of the merge-properties-runtime module
+     * @parameter
+     */
+    private Boolean shardByPrefix = false;
+
+    /**
+     * The size, in kilobytes, up to which the following prefixes share a shard, each prefix having a shard of its own
+     * when not set. A prefix is never split, a prefix larger than it has a shard of its own
+     * @parameter
+     */
+    private Integer maxShardSize;
+
+    /**
+     * Whether the entries of each locale should be sorted by runs of runSize entries spilled to temporary files, then
+     * merged, checked and written one key at a time, so that the memory used does not depend on the size of the
+     * bundles. Only sorted properties files are written, without parse cache nor incremental merge
+     * @parameter
+     */
+    private Boolean lowMemory = false;
+
+    /**
+     * The number of entries a locale holds in memory before they are sorted and spilled, in low memory mode
+     * @parameter
+     */
+    private Integer runSize = 100000;
+
     /**
      * Returns the target file where the result of the merging should be saved.
      *
@@ -65,32 +182,199 @@ public class Merge {
         return target;
     }
 
+    public void setTarget(final String target) {
+        this.target = target;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(final String pattern) {
+        this.pattern = pattern;
+    }
+
+    public String[] getExcludes() {
+        return excludes;
+    }
+
+    public void setExcludes(final String[] excludes) {
+        this.excludes = excludes;
+    }
+
+    public Boolean getDefaultExcludes() {
+        return defaultExcludes;
+    }
+
+    public void setDefaultExcludes(final Boolean defaultExcludes) {
+        this.defaultExcludes = defaultExcludes;
+    }
+
     public Boolean getFailOnCountMismatch() {
         return failOnCountMismatch;
     }
 
     /**
-     * Returns the files that are to be merged.
+     * Returns the files that are to be merged, scanning the directory for this merge only.
      *
      * @return The files to merge.
      * @param directory
+     * @see FileIndex
      */
-    public List<String> getFileNames(final File directory) {
-        return scanDirectory(directory);
+    public List<String> getFileNames(final File directory) throws MojoExecutionException {
+        return FileIndex.scan(directory, Collections.singletonList(this)).getFileNames(this);
     }
 
-    private List<String> scanDirectory(final File directory) {
-        DirectoryScanner scanner = new DirectoryScanner();
-        scanner.setBasedir(directory);
-        if (pattern != null) {
-            scanner.setIncludes(new String[]{pattern});
-        }
-        scanner.scan();
+    public String[] getExcludeKeyCheck() {
+        return excludeKeyCheck;
+    }
 
-        return Arrays.asList(scanner.getIncludedFiles());
+    public void setExcludeKeyCheck(final String[] excludeKeyCheck) {
+        this.excludeKeyCheck = excludeKeyCheck;
     }
 
-    public String[] getExcludeKeyCheck() {
-        return excludeKeyCheck;
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(final String encoding) {
+        this.encoding = encoding;
+    }
+
+    public Boolean getSortKeys() {
+        return sortKeys;
+    }
+
+    public void setSortKeys(final Boolean sortKeys) {
+        this.sortKeys = sortKeys;
+    }
+
+    public String getLineSeparator() {
+        return lineSeparator;
+    }
+
+    public String getOutputEncoding() {
+        return outputEncoding;
+    }
+
+    public void setOutputEncoding(final String outputEncoding) {
+        this.outputEncoding = outputEncoding;
+    }
+
+    public String getInputFormat() {
+        return inputFormat;
+    }
+
+    public void setInputFormat(final String inputFormat) {
+        this.inputFormat = inputFormat;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(final String format) {
+        this.format = format;
+    }
+
+    public Boolean getValidateMessageFormat() {
+        return validateMessageFormat;
+    }
+
+    public void setValidateMessageFormat(final Boolean validateMessageFormat) {
+        this.validateMessageFormat = validateMessageFormat;
+    }
+
+    public Boolean getTemplates() {
+        return templates;
+    }
+
+    public void setTemplates(final Boolean templates) {
+        this.templates = templates;
+    }
+
+    public String getKeysClass() {
+        return keysClass;
+    }
+
+    public void setKeysClass(final String keysClass) {
+        this.keysClass = keysClass;
+    }
+
+    public Boolean getPoolValues() {
+        return poolValues;
+    }
+
+    public void setPoolValues(final Boolean poolValues) {
+        this.poolValues = poolValues;
+    }
+
+    public Boolean getOmitBaseLocaleValues() {
+        return omitBaseLocaleValues;
+    }
+
+    public void setOmitBaseLocaleValues(final Boolean omitBaseLocaleValues) {
+        this.omitBaseLocaleValues = omitBaseLocaleValues;
+    }
+
+    public Boolean getShardByPrefix() {
+        return shardByPrefix;
+    }
+
+    public void setShardByPrefix(final Boolean shardByPrefix) {
+        this.shardByPrefix = shardByPrefix;
+    }
+
+    public Integer getMaxShardSize() {
+        return maxShardSize;
+    }
+
+    public void setMaxShardSize(final Integer maxShardSize) {
+        this.maxShardSize = maxShardSize;
+    }
+
+    public Boolean getLowMemory() {
+        return lowMemory;
+    }
+
+    public void setLowMemory(final Boolean lowMemory) {
+        this.lowMemory = lowMemory;
+    }
+
+    public Integer getRunSize() {
+        return runSize;
+    }
+
+    public void setRunSize(final Integer runSize) {
+        this.runSize = runSize;
+    }
+
+    /**
+     * Describes the whole configuration, it is used to detect configuration changes between incremental builds.
+     */
+    @Override
+    public String toString() {
+        return "Merge{target=" + target
+               + ", pattern=" + pattern
+               + ", excludes=" + Arrays.toString(excludes)
+               + ", defaultExcludes=" + defaultExcludes
+               + ", failOnCountMismatch=" + failOnCountMismatch
+               + ", excludeKeyCheck=" + Arrays.toString(excludeKeyCheck)
+               + ", encoding=" + encoding
+               + ", sortKeys=" + sortKeys
+               + ", lineSeparator=" + lineSeparator
+               + ", outputEncoding=" + outputEncoding
+               + ", inputFormat=" + inputFormat
+               + ", format=" + format
+               + ", validateMessageFormat=" + validateMessageFormat
+               + ", templates=" + templates
+               + ", keysClass=" + keysClass
+               + ", poolValues=" + poolValues
+               + ", omitBaseLocaleValues=" + omitBaseLocaleValues
+               + ", shardByPrefix=" + shardByPrefix
+               + ", maxShardSize=" + maxShardSize
+               + ", lowMemory=" + lowMemory
+               + ", runSize=" + runSize
+               + "}";
     }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * The state shared by all the merges of a mojo execution, built with {@link #builder(Executor)} :
+ * <pre>
+ *     MergeContext.builder(executor).manifest(manifest).report(report).build()
+ * </pre>
+ */
+public class MergeContext {
+    private final Executor executor;
+    private final MergeManifest manifest;
+    private final MergeReport report;
+    private final FileIndex fileIndex;
+    private final FragmentCache fragmentCache;
+    private final String sourcePath;
+    private final File runsDirectory;
+
+    private MergeContext(final Builder builder) {
+        this.executor = builder.executor;
+        this.manifest = builder.manifest;
+        this.report = builder.report;
+        this.fileIndex = builder.fileIndex;
+        this.fragmentCache = builder.fragmentCache;
+        this.sourcePath = builder.sourcePath;
+        this.runsDirectory = builder.runsDirectory;
+    }
+
+    /**
+     * @param executor the executor running the merges and their per-locale stages
+     */
+    public static Builder builder(final Executor executor) {
+        return new Builder(executor);
+    }
+
+    /**
+     * A context running everything on the calling thread, without incremental merging.
+     */
+    public static MergeContext sequential() {
+        return builder(MoreExecutors.sameThreadExecutor()).build();
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public MergeManifest getManifest() {
+        return manifest;
+    }
+
+    public MergeReport getReport() {
+        return report;
+    }
+
+    public FileIndex getFileIndex() {
+        return fileIndex;
+    }
+
+    FragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
+    String getSourcePath() {
+        return sourcePath;
+    }
+
+    File getRunsDirectory() {
+        return runsDirectory;
+    }
+
+    /**
+     * Everything but the executor is optional.
+     */
+    public static final class Builder {
+        private final Executor executor;
+        private MergeManifest manifest;
+        private MergeReport report;
+        private FileIndex fileIndex;
+        private FragmentCache fragmentCache;
+        private String sourcePath;
+        private File runsDirectory;
+
+        private Builder(final Executor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * @param manifest the manifest of the previous build for incremental merging, none to always merge
+         */
+        public Builder manifest(final MergeManifest manifest) {
+            this.manifest = manifest;
+            return this;
+        }
+
+        /**
+         * @param report the report collecting the metrics of every merge, a new one by default
+         */
+        public Builder report(final MergeReport report) {
+            this.report = report;
+            return this;
+        }
+
+        /**
+         * @param fileIndex the files of the scanned directory, none to let each merge scan it
+         */
+        public Builder fileIndex(final FileIndex fileIndex) {
+            this.fileIndex = fileIndex;
+            return this;
+        }
+
+        /**
+         * @param fragmentCache the entries of the files read by previous merges, none to always read the files
+         */
+        Builder fragmentCache(final FragmentCache fragmentCache) {
+            this.fragmentCache = fragmentCache;
+            return this;
+        }
+
+        /**
+         * @param sourcePath the directory the keys classes are generated in, none to not generate them
+         */
+        Builder sourcePath(final String sourcePath) {
+            this.sourcePath = sourcePath;
+            return this;
+        }
+
+        /**
+         * @param runsDirectory the directory the low memory merges spill their runs to, a temporary one by default
+         */
+        Builder runsDirectory(final File runsDirectory) {
+            this.runsDirectory = runsDirectory;
+            return this;
+        }
+
+        public MergeContext build() {
+            if (report == null) {
+                report = new MergeReport();
+            }
+            return new MergeContext(this);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records, for every merge, a hash of its configuration and of the input files of each locale, so that the merges
+ * (or locales) whose inputs did not change since the previous build can be skipped.
+ * The hash of an input file is reused as long as its length and last modification date are unchanged.
+ */
+public class MergeManifest {
+    static final String FILE_NAME = ".merge-properties.manifest";
+    private static final String FILE = "file.";
+    private static final String MERGE = "merge.";
+    private static final String CONFIGURATION = ".configuration";
+    private static final String LOCALE = ".locale.";
+
+    private final File file;
+    private final Properties previous;
+    private final ConcurrentMap<String, String> current = new ConcurrentHashMap<String, String>();
+
+    private MergeManifest(final File file, final Properties previous) {
+        this.file = file;
+        this.previous = previous;
+    }
+
+    static MergeManifest load(final File outputDirectory) throws MojoExecutionException {
+        final File file = new File(outputDirectory, FILE_NAME);
+        final Properties previous = new Properties();
+        if (file.isFile()) {
+            InputStream input = null;
+            try {
+                input = new FileInputStream(file);
+                previous.load(input);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not read from file: " + file.getAbsolutePath(), e);
+            } finally {
+                if (input != null) {
+                    try {
+                        input.close();
+                    } catch (IOException e) {
+                        // nothing to do
+                    }
+                }
+            }
+        }
+        return new MergeManifest(file, previous);
+    }
+
+    /**
+     * Writes the state recorded during this build, merges that have not been recorded (failed or removed from the
+     * configuration) will be fully merged on next build.
+     */
+    void save() throws MojoExecutionException {
+        final Properties properties = new Properties();
+        properties.putAll(current);
+        final File directory = file.getParentFile();
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            throw new MojoExecutionException("Could not create directory : " + directory.getAbsolutePath());
+        }
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(file);
+            properties.store(output, null);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write to file: " + file.getAbsolutePath(), e);
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    // no can do
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a new build, in the same JVM, from the state recorded by this one. The merges that have not been run by
+     * this build keep the state of the previous one.
+     */
+    MergeManifest next() {
+        final Properties recorded = new Properties();
+        recorded.putAll(previous);
+        for (String key : current.keySet()) {
+            if (key.startsWith(MERGE) && key.endsWith(CONFIGURATION)) {
+                // the locales of a merge that has been run are all recorded again
+                final String localePrefix = key.substring(0, key.length() - CONFIGURATION.length()) + LOCALE;
+                for (String previousKey : previous.stringPropertyNames()) {
+                    if (previousKey.startsWith(localePrefix)) {
+                        recorded.remove(previousKey);
+                    }
+                }
+            }
+        }
+        recorded.putAll(current);
+        return new MergeManifest(file, recorded);
+    }
+
+    /**
+     * Hashes everything that changes the output of a merge, except its input files. Whether errors are ignored is
+     * part of it, so that a merge which only passed because they were is checked again by the next strict build.
+     */
+    String fingerprint(final Merge merge, final File directory, final String resourcePath) {
+        return Hashing.md5().newHasher()
+                .putString(merge.toString(), Charsets.UTF_8)
+                .putString(directory.getAbsolutePath(), Charsets.UTF_8)
+                .putString(resourcePath, Charsets.UTF_8)
+                .putBoolean(Boolean.getBoolean(MergeProperty.ERROR_IGNORE_FLAG))
+                .hash().toString();
+    }
+
+    /**
+     * Hashes the names, order and contents of the input files of a locale.
+     */
+    String fingerprint(final File directory, final List<String> propertyFileNames) throws MojoExecutionException {
+        final Hasher hasher = Hashing.md5().newHasher();
+        for (String propertyFileName : propertyFileNames) {
+            hasher.putString(propertyFileName, Charsets.UTF_8)
+                  .putString(hash(new File(directory, propertyFileName)), Charsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    private String hash(final File input) throws MojoExecutionException {
+        final String key = FILE + input.getAbsolutePath();
+        final String stat = input.length() + "," + input.lastModified() + ",";
+        final String previousValue = previous.getProperty(key);
+        if (previousValue != null && previousValue.startsWith(stat)) {
+            current.put(key, previousValue);
+            return previousValue.substring(stat.length());
+        }
+        try {
+            final String hash = Files.hash(input, Hashing.md5()).toString();
+            current.put(key, stat + hash);
+            return hash;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read from file: " + input.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Returns the locales recorded by the previous build for the given target, none if its configuration changed.
+     */
+    Map<String, LocaleState> getLocaleStates(final String target, final String configuration) {
+        final Map<String, LocaleState> states = new LinkedHashMap<String, LocaleState>();
+        if (configuration.equals(previous.getProperty(MERGE + target + CONFIGURATION))) {
+            final String localePrefix = MERGE + target + LOCALE;
+            for (String key : previous.stringPropertyNames()) {
+                if (key.startsWith(localePrefix)) {
+                    final LocaleState state = LocaleState.parse(previous.getProperty(key));
+                    if (state != null) {
+                        states.put(key.substring(localePrefix.length()), state);
+                    }
+                }
+            }
+        }
+        return states;
+    }
+
+    void record(final String target, final String configuration, final Map<String, LocaleState> states) {
+        current.put(MERGE + target + CONFIGURATION, configuration);
+        for (Map.Entry<String, LocaleState> entry : states.entrySet()) {
+            current.put(MERGE + target + LOCALE + entry.getKey(), entry.getValue().toString());
+        }
+    }
+
+    /**
+     * The recorded state of a locale of a merge : the hash of its inputs, its key count and an order independent hash
+     * of its keys, which is enough to check that the keys of a changed locale match the ones of the other locales.
+     */
+    static class LocaleState {
+        private final String inputs;
+        private final int keyCount;
+        private final String keys;
+
+        LocaleState(final String inputs, final int keyCount, final String keys) {
+            this.inputs = inputs;
+            this.keyCount = keyCount;
+            this.keys = keys;
+        }
+
+        LocaleState(final String inputs, final Bundle properties) {
+            this(inputs, properties.size(), hashKeys(properties));
+        }
+
+        private static String hashKeys(final Bundle properties) {
+            long sum = 0;
+            long xor = 0;
+            for (String key : properties.keys()) {
+                final long hash = Hashing.murmur3_128().hashString(key, Charsets.UTF_8).asLong();
+                sum += hash;
+                xor ^= hash;
+            }
+            return Long.toHexString(sum) + Long.toHexString(xor);
+        }
+
+        /**
+         * @return the state, {@code null} when it has been written by a previous version of the plugin
+         */
+        static LocaleState parse(final String value) {
+            final String[] parts = value.split(",");
+            if (parts.length != 3) {
+                return null;
+            }
+            return new LocaleState(parts[0], Integer.parseInt(parts[1]), parts[2]);
+        }
+
+        String getInputs() {
+            return inputs;
+        }
+
+        int getKeyCount() {
+            return keyCount;
+        }
+
+        String getKeys() {
+            return keys;
+        }
+
+        @Override
+        public String toString() {
+            return inputs + "," + keyCount + "," + keys;
+        }
+    }
+}
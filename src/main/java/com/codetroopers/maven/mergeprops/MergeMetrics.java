@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The timings and counts of a single merge. The stages running once per file (parsing, which includes key checking
+ * and quote escaping) or per locale (writing) are summed over all the threads, the other ones are wall-clock times.
+ */
+public class MergeMetrics {
+    enum Phase {
+        SCAN, PARSE, COUNT_CHECK, VALIDATE, WRITE
+    }
+
+    enum Status {
+        PENDING, MERGED, PARTIALLY_MERGED, UP_TO_DATE, FAILED
+    }
+
+    private final String target;
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicInteger files = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger cachedFiles = new AtomicInteger();
+    private final AtomicInteger duplicateKeys = new AtomicInteger();
+    private final AtomicInteger values = new AtomicInteger();
+    private final AtomicInteger distinctValues = new AtomicInteger();
+    private final AtomicInteger writtenFiles = new AtomicInteger();
+    private final AtomicInteger unchangedFiles = new AtomicInteger();
+    private final Map<String, Integer> localeKeys = new LinkedHashMap<String, Integer>();
+    private volatile Status status = Status.PENDING;
+    private volatile long totalNanos;
+
+    MergeMetrics(final String target) {
+        this.target = target;
+    }
+
+    void add(final Phase phase, final long startNanos) {
+        phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - startNanos);
+    }
+
+    void addInput(final long length) {
+        files.incrementAndGet();
+        bytes.addAndGet(length);
+    }
+
+    void addCached() {
+        cachedFiles.incrementAndGet();
+    }
+
+    void addOutput(final boolean written) {
+        (written ? writtenFiles : unchangedFiles).incrementAndGet();
+    }
+
+    void addDuplicateKeys(final int keys) {
+        duplicateKeys.addAndGet(keys);
+    }
+
+    void setValues(final int values, final int distinctValues) {
+        this.values.set(values);
+        this.distinctValues.set(distinctValues);
+    }
+
+    synchronized void setKeys(final String locale, final int keys) {
+        localeKeys.put(locale, keys);
+    }
+
+    void setStatus(final Status status) {
+        this.status = status;
+    }
+
+    void setTotal(final long startNanos) {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public long getMillis(final Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos.get(phase.ordinal()));
+    }
+
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    public int getFiles() {
+        return files.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return the number of input files whose entries have been taken from the cache instead of being read
+     */
+    public int getCachedFiles() {
+        return cachedFiles.get();
+    }
+
+    /**
+     * @return the number of keys overridden by a later file of their locale, summed over the locales
+     */
+    public int getDuplicateKeys() {
+        return duplicateKeys.get();
+    }
+
+    /**
+     * @return the number of values of the locales that have been pooled, 0 when values are not pooled
+     */
+    public int getValues() {
+        return values.get();
+    }
+
+    /**
+     * @return the number of distinct values among the pooled ones
+     */
+    public int getDistinctValues() {
+        return distinctValues.get();
+    }
+
+    public int getWrittenFiles() {
+        return writtenFiles.get();
+    }
+
+    public int getUnchangedFiles() {
+        return unchangedFiles.get();
+    }
+
+    public synchronized Map<String, Integer> getLocaleKeys() {
+        return new LinkedHashMap<String, Integer>(localeKeys);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+}
@@ -16,6 +16,9 @@
 
 package com.codetroopers.maven.mergeprops;
 
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.AbstractMojoExecutionException;
@@ -25,7 +28,12 @@ import org.apache.maven.project.MavenProject;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 /**
  * Merges multiple properties files into one.
@@ -51,6 +59,13 @@ public class MergeMojo extends AbstractMojo {
      * @parameter default-value="${project.build.directory}/generated-resources/i18n"
      */
     private File outputDirectory;
+
+    /**
+     * The directory to generate the keys classes of the merges in, added to the compile source roots.
+     *
+     * @parameter default-value="${project.build.directory}/generated-sources/i18n"
+     */
+    private File sourceDirectory;
     /**
      * The directory to scan for files
      * @parameter default-value="${project.basedir}"
@@ -77,19 +92,144 @@ public class MergeMojo extends AbstractMojo {
      */
     private Merge[] merges;
 
+    /**
+     * The number of threads used to run the merges, and the locales of each merge, concurrently.
+     * Defaults to the number of available processors.
+     *
+     * @parameter expression="${merge.threads}"
+     */
+    private Integer threads;
+
+    /**
+     * Whether merges whose configuration and input files did not change since the previous build should be skipped.
+     * The state of the previous build is kept in a manifest file in the output directory, when only the files of
+     * some locales changed only these locales are merged again.
+     *
+     * @parameter expression="${merge.incremental}" default-value="false"
+     */
+    private boolean incremental;
+
+    /**
+     * Whether a summary table of the timings and counts of every merge should be logged.
+     *
+     * @parameter expression="${merge.metrics}" default-value="false"
+     */
+    private boolean printMetrics;
+
+    /**
+     * The file where the timings and counts of every merge are written as JSON, none is written when not set.
+     * For example : ${project.build.directory}/merge-properties-metrics.json
+     *
+     * @parameter expression="${merge.metricsFile}"
+     */
+    private File metricsFile;
+
+    /**
+     * Whether the checked and escaped entries of every input file should be cached on disk, so that the next builds
+     * only read the files that changed, even when the merges themselves have to run.
+     *
+     * @parameter expression="${merge.parseCache}" default-value="false"
+     */
+    private boolean parseCache;
+
+    /**
+     * The directory of the parse cache.
+     *
+     * @parameter expression="${merge.cacheDirectory}" default-value="${project.build.directory}/merge-properties-cache"
+     */
+    private File cacheDirectory;
+
+    /**
+     * The size, in megabytes, the parse cache is kept under by evicting its least recently used entries.
+     *
+     * @parameter expression="${merge.cacheSize}" default-value="64"
+     */
+    private long cacheSize;
+
+    /**
+     * Whether the entries of the files read should be shared with the other modules of the reactor build, so that
+     * files merged by several modules are only read once. Each module still scans its directory, to see the files
+     * generated by the previous modules. The modules must use the same version of the plugin, the parse cache
+     * settings of the first module are used by the whole build.
+     *
+     * @parameter expression="${merge.shareAcrossModules}" default-value="false"
+     */
+    private boolean shareAcrossModules;
+
+    /**
+     * The directory the merges having lowMemory set spill the sorted runs of their entries to.
+     *
+     * @parameter expression="${merge.runsDirectory}" default-value="${project.build.directory}/merge-properties-runs"
+     */
+    private File runsDirectory;
+
+    /**
+     * The projects of the reactor build, the same list for all its modules, parallel builds included.
+     *
+     * @parameter expression="${reactorProjects}"
+     * @readonly
+     */
+    private List<MavenProject> reactorProjects;
+
     /**
      * @see org.apache.maven.plugin.AbstractMojo#execute()
      */
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         final String resourcePath = attachResourcePathToBuild();
+        final String sourcePath = attachSourcePathToBuild();
+        final MergeManifest manifest = incremental ? MergeManifest.load(outputDirectory) : null;
         List<AbstractMojoExecutionException> exceptions = new ArrayList<AbstractMojoExecutionException>();
+        final MergeReport report = new MergeReport();
         for (Merge merge : merges) {
-            try {
-                new MergeProperty(merge, resourcePath, directory, getLog()).merge();
-            } catch (AbstractMojoExecutionException e) {
-                exceptions.add(e);
+            report.metrics(merge);
+        }
+        final ReactorCache reactorCache = getReactorCache();
+        final long start = System.nanoTime();
+        final FileIndex fileIndex = FileIndex.scan(directory, Arrays.asList(merges));
+        report.setIndex(fileIndex.size(), start);
+        final FragmentCache fragmentCache;
+        if (reactorCache != null) {
+            fragmentCache = reactorCache.getFragmentCache();
+        } else {
+            fragmentCache = parseCache ? createFragmentCache(false) : null;
+        }
+        final ExecutorService executor = createExecutor();
+        final MergeContext context = MergeContext.builder(executor).manifest(manifest).report(report)
+                                                 .fileIndex(fileIndex).fragmentCache(fragmentCache)
+                                                 .sourcePath(sourcePath).runsDirectory(runsDirectory).build();
+        try {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (final Merge merge : merges) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws MojoExecutionException, MojoFailureException {
+                        new MergeProperty(merge, resourcePath, directory, getLog(), context).merge();
+                        return null;
+                    }
+                });
+            }
+            for (FutureTask<Void> task : Tasks.runAll(executor, tasks)) {
+                try {
+                    Tasks.get(task);
+                } catch (AbstractMojoExecutionException e) {
+                    exceptions.add(e);
+                }
             }
+        } finally {
+            executor.shutdown();
+        }
+        if (manifest != null) {
+            manifest.save();
+        }
+        if (fragmentCache != null) {
+            fragmentCache.evict();
+        }
+        if (printMetrics) {
+            getLog().info("Merge properties metrics (times in ms) :\n" + report.toTable());
+        }
+        if (metricsFile != null) {
+            report.writeJson(metricsFile);
         }
         if (!exceptions.isEmpty()){
             for (AbstractMojoExecutionException exception : exceptions) {
@@ -100,18 +240,94 @@ public class MergeMojo extends AbstractMojo {
         }
     }
 
-    private String attachResourcePathToBuild() {
+    /**
+     * Creates the executor running the merges, it is up to the caller to shut it down.
+     */
+    protected ExecutorService createExecutor() {
+        final int threadCount = getThreadCount();
+        // the executing thread takes part in the work, hence one thread less in the pool
+        return threadCount > 1
+               ? Executors.newFixedThreadPool(threadCount - 1, new ThreadFactoryBuilder()
+                       .setNameFormat("merge-properties-%d").setDaemon(true).build())
+               : MoreExecutors.sameThreadExecutor();
+    }
+
+    /**
+     * @return the state shared with the other modules of the build, {@code null} when it is not shared
+     */
+    private ReactorCache getReactorCache() {
+        if (!shareAcrossModules || reactorProjects == null) {
+            return null;
+        }
+        return ReactorCache.forBuild(reactorProjects, new Supplier<FragmentCache>() {
+            @Override
+            public FragmentCache get() {
+                return createFragmentCache(true);
+            }
+        });
+    }
+
+    /**
+     * Creates the cache of the entries of the input files, persisted in the cache directory when enabled.
+     *
+     * @param retain whether the entries should also be kept in memory
+     */
+    FragmentCache createFragmentCache(final boolean retain) {
+        return new FragmentCache(retain, parseCache ? cacheDirectory : null, cacheSize * 1024 * 1024);
+    }
+
+    private int getThreadCount() {
+        if (threads == null || threads < 1) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return threads;
+    }
+
+    protected String attachResourcePathToBuild() {
         final String resourcePath = outputDirectory.getPath();
         if (!containsDirectory(project.getResources(), resourcePath)) {
             Resource resource = new Resource();
 
             resource.setDirectory(resourcePath);
             resource.addExclude("**/*.java");
+            resource.addExclude(MergeManifest.FILE_NAME);
             project.getResources().add(resource);
         }
         return resourcePath;
     }
 
+    /**
+     * @return the directory of the keys classes, {@code null} when no merge generates one
+     */
+    protected String attachSourcePathToBuild() {
+        for (Merge merge : merges) {
+            if (merge.getKeysClass() != null) {
+                final String sourcePath = sourceDirectory.getPath();
+                if (!project.getCompileSourceRoots().contains(sourcePath)) {
+                    project.addCompileSourceRoot(sourcePath);
+                }
+                return sourcePath;
+            }
+        }
+        return null;
+    }
+
+    protected File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    protected File getRunsDirectory() {
+        return runsDirectory;
+    }
+
+    protected File getDirectory() {
+        return directory;
+    }
+
+    protected List<Merge> getMerges() {
+        return Arrays.asList(merges);
+    }
+
     /**
      * Gets whether the specified list of resources contains a resource with the specified directory.
      *
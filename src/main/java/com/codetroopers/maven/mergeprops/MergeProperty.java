@@ -17,31 +17,41 @@
 package com.codetroopers.maven.mergeprops;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
-import com.google.common.base.Predicate;
-import com.google.common.base.Strings;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -51,160 +61,965 @@ import java.util.regex.Pattern;
 public class MergeProperty {
     public static final String ERROR_IGNORE_FLAG = "i18n.error.ignore";
     protected static Pattern prefixPattern = Pattern.compile(".*_(.*)\\..*");
+    /**
+     * The locale of the files without locale suffix.
+     */
+    private static final String BASE_LOCALE = "";
+    /**
+     * The number of lonely keys reported by a low memory merge.
+     */
+    static final int MAX_REPORTED_KEYS = 1000;
     private final Merge merge;
     private final String resourcePath;
     private final File directory;
     private final Log log;
+    private final Executor executor;
+    private final MergeManifest manifest;
+    private final MergeMetrics metrics;
+    private final FileIndex fileIndex;
+    private final FragmentCache fragmentCache;
+    private final String sourcePath;
+    private final File runsDirectory;
+    private final KeyCheck keyCheck;
 
     public MergeProperty(Merge merge, final String resourcePath, final File directory, final Log log) {
+        this(merge, resourcePath, directory, log, MergeContext.sequential());
+    }
+
+    /**
+     * @param context the state shared by the merges of the mojo execution
+     */
+    public MergeProperty(Merge merge, final String resourcePath, final File directory, final Log log,
+                         final MergeContext context) {
         this.merge = merge;
         this.resourcePath = resourcePath;
         this.directory = directory;
         this.log = log;
+        this.executor = context.getExecutor();
+        this.manifest = context.getManifest();
+        this.metrics = context.getReport().metrics(merge);
+        this.fileIndex = context.getFileIndex();
+        this.fragmentCache = context.getFragmentCache();
+        this.sourcePath = context.getSourcePath();
+        this.runsDirectory = context.getRunsDirectory();
+        this.keyCheck = new KeyCheck(merge.getExcludeKeyCheck());
     }
 
     public void merge() throws MojoExecutionException, MojoFailureException {
-        final Map<String, Properties> propertiesMap = loadFiles();
-        processProperties(propertiesMap, merge, log);
+        final long start = System.nanoTime();
+        try {
+            final Map<String, List<String>> localeFileNames = groupByLocale(getFileNames());
+            metrics.add(MergeMetrics.Phase.SCAN, start);
+            if (merge.getLowMemory()) {
+                // the entries of the locales are never held in memory to be recorded and reused
+                mergeExternally(localeFileNames);
+            } else if (manifest == null) {
+                mergeLocales(localeFileNames);
+            } else {
+                mergeIncrementally(localeFileNames);
+            }
+        } catch (MojoExecutionException e) {
+            metrics.setStatus(MergeMetrics.Status.FAILED);
+            throw e;
+        } catch (MojoFailureException e) {
+            metrics.setStatus(MergeMetrics.Status.FAILED);
+            throw e;
+        } finally {
+            metrics.setTotal(start);
+        }
+    }
+
+    private Map<String, Bundle> mergeLocales(final Map<String, List<String>> localeFileNames)
+            throws MojoExecutionException, MojoFailureException {
+        final Map<String, Bundle> propertiesMap = loadFiles(localeFileNames);
+        final long start = System.nanoTime();
+        checkCountMismatch(propertiesMap, merge);
+        metrics.add(MergeMetrics.Phase.COUNT_CHECK, start);
+        validateMessageFormats(propertiesMap);
+        if (merge.getPoolValues()) {
+            poolValues(propertiesMap);
+        }
         saveToFile(propertiesMap);
+        saveKeysClass(propertiesMap);
+        metrics.setStatus(MergeMetrics.Status.MERGED);
+        return propertiesMap;
+    }
+
+    /**
+     * Merges the locales without holding their entries in memory : the entries of each locale are spilled to sorted
+     * runs as the files are read, then the runs of every locale are merged together in key order.
+     */
+    private void mergeExternally(final Map<String, List<String>> localeFileNames)
+            throws MojoExecutionException, MojoFailureException {
+        if (OutputFormat.forMerge(merge) != OutputFormat.PROPERTIES || !merge.getSortKeys() || merge.getTemplates()
+            || merge.getValidateMessageFormat() || merge.getKeysClass() != null || merge.getPoolValues()
+            || merge.getOmitBaseLocaleValues() || merge.getShardByPrefix()) {
+            throw new MojoExecutionException("The low memory merge of " + merge.getTarget() + " only writes sorted "
+                                             + "properties files, without templates, message format validation, "
+                                             + "keys class, pooled values, omitted base locale values or shards");
+        }
+        final File spillDirectory = runsDirectory != null ? runsDirectory : Files.createTempDir();
+        if (!spillDirectory.mkdirs() && !spillDirectory.isDirectory()) {
+            throw new MojoExecutionException("Could not create directory : " + spillDirectory);
+        }
+        final List<SortedRuns> localeRuns = new ArrayList<SortedRuns>(localeFileNames.size());
+        try {
+            for (int i = 0; i < localeFileNames.size(); i++) {
+                localeRuns.add(new SortedRuns(spillDirectory, merge.getRunSize()));
+            }
+            spill(localeFileNames, localeRuns);
+            writeMerged(localeFileNames, localeRuns);
+            metrics.setStatus(MergeMetrics.Status.MERGED);
+        } finally {
+            for (SortedRuns runs : localeRuns) {
+                runs.close();
+            }
+            if (runsDirectory == null && !spillDirectory.delete()) {
+                spillDirectory.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Reads the files of each locale into its runs, the locales in parallel.
+     */
+    private void spill(final Map<String, List<String>> localeFileNames, final List<SortedRuns> localeRuns)
+            throws MojoExecutionException, MojoFailureException {
+        final Charset charset = InputFiles.charset(merge);
+        final BundleSource source = BundleSources.forMerge(merge);
+        final Iterator<SortedRuns> runsIterator = localeRuns.iterator();
+        List<Callable<Void>> reads = Lists.newArrayList();
+        for (final List<String> propertyFileNames : localeFileNames.values()) {
+            final SortedRuns runs = runsIterator.next();
+            reads.add(new Callable<Void>() {
+                @Override
+                public Void call() throws MojoExecutionException, MojoFailureException {
+                    for (int i = 0; i < propertyFileNames.size(); i++) {
+                        final String propertyFileName = propertyFileNames.get(i);
+                        final BundleSource fileSource = source != null
+                                                        ? source
+                                                        : BundleSources.forFile(propertyFileName);
+                        final int file = i;
+                        try {
+                            readProperties(propertyFileName, fileSource.charset(charset), fileSource,
+                                           new BundleSource.Handler() {
+                                               @Override
+                                               public void property(final String key, final String value) {
+                                                   runs.put(file, key, value);
+                                               }
+                                           });
+                        } catch (SortedRuns.SpillException e) {
+                            throw new MojoExecutionException("Could not spill the entries of " + propertyFileName,
+                                                             e.getCause());
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        Tasks.invokeAll(executor, reads);
+    }
+
+    /**
+     * Merges the runs of every locale in key order, checking that each key is held by every locale and writing it
+     * as it comes. The final files are replaced once every key has been checked.
+     */
+    private void writeMerged(final Map<String, List<String>> localeFileNames, final List<SortedRuns> localeRuns)
+            throws MojoExecutionException, MojoFailureException {
+        final long start = System.nanoTime();
+        final File generated = new File(resourcePath);
+        if (!generated.mkdirs() && !generated.isDirectory()) {
+            throw new MojoExecutionException("Could not create directory : " + resourcePath);
+        }
+        final PropertiesWriter writer = PropertiesWriter.forMerge(merge);
+        final List<String> locales = new ArrayList<String>(localeFileNames.keySet());
+        final int count = locales.size();
+        final List<SortedRuns.Cursor> cursors = new ArrayList<SortedRuns.Cursor>(count);
+        final List<PropertiesWriter.Output> outputs = new ArrayList<PropertiesWriter.Output>(count);
+        final List<File> written = new ArrayList<File>(count);
+        final int[] sizes = new int[count];
+        final List<List<String>> emptyProperties = new ArrayList<List<String>>(count);
+        // only the first lonely keys are kept to be reported, the memory used does not depend on their number
+        final boolean checkCount = shouldCheckCount(merge);
+        final Map<String, BitSet> lonelyKeys = new TreeMap<String, BitSet>();
+        int lonelyCount = 0;
+        try {
+            for (String locale : locales) {
+                final SortedRuns.Cursor cursor = localeRuns.get(cursors.size()).open(localeFileNames.get(locale));
+                cursors.add(cursor);
+                cursor.next();
+                final File out = getOutputFile(locale);
+                final File temp = File.createTempFile("." + out.getName(), ".tmp", generated);
+                written.add(temp);
+                outputs.add(writer.open(new FileOutputStream(temp), out.getName()));
+                emptyProperties.add(new ArrayList<String>());
+            }
+            while (true) {
+                String key = null;
+                for (SortedRuns.Cursor cursor : cursors) {
+                    if (cursor.getKey() != null && (key == null || cursor.getKey().compareTo(key) < 0)) {
+                        key = cursor.getKey();
+                    }
+                }
+                if (key == null) {
+                    break;
+                }
+                final BitSet keyLocales = new BitSet(count);
+                for (int i = 0; i < count; i++) {
+                    final SortedRuns.Cursor cursor = cursors.get(i);
+                    if (key.equals(cursor.getKey())) {
+                        keyLocales.set(i);
+                        outputs.get(i).write(key, cursor.getValue());
+                        sizes[i]++;
+                        if (cursor.getValue().isEmpty()) {
+                            emptyProperties.get(i).add(key);
+                        }
+                        cursor.next();
+                    }
+                }
+                if (checkCount && keyLocales.cardinality() != count && lonelyCount++ < MAX_REPORTED_KEYS) {
+                    lonelyKeys.put(key, keyLocales);
+                }
+            }
+            for (PropertiesWriter.Output output : outputs) {
+                output.close();
+            }
+            for (int i = 0; i < count; i++) {
+                reportDuplicates(locales.get(i), cursors.get(i).getDuplicates());
+                metrics.setKeys(locales.get(i), sizes[i]);
+                logLocale(merge, log, locales.get(i), emptyProperties.get(i), sizes[i]);
+            }
+            if (lonelyCount > 0) {
+                throw countMismatch(merge, locales, lonelyKeys, lonelyCount);
+            }
+            for (int i = 0; i < count; i++) {
+                metrics.addOutput(OutputFiles.replaceIfChanged(written.get(i), getOutputFile(locales.get(i))));
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not merge the entries of final file " + merge.getTarget(), e);
+        } finally {
+            for (Closeable closeable : Iterables.concat(outputs, cursors)) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    // nothing to do
+                }
+            }
+            for (File temp : written) {
+                if (temp.exists() && !temp.delete()) {
+                    temp.deleteOnExit();
+                }
+            }
+        }
+        metrics.add(MergeMetrics.Phase.WRITE, start);
+    }
+
+    /**
+     * Only merges the locales whose input files changed since the previous build. The key count check of the
+     * changed locales is done against the counts recorded for the other ones, all locales are merged again when it
+     * fails so that the lonely keys can be reported.
+     */
+    private void mergeIncrementally(final Map<String, List<String>> localeFileNames)
+            throws MojoExecutionException, MojoFailureException {
+        final String configuration = manifest.fingerprint(merge, directory, resourcePath);
+        final Map<String, MergeManifest.LocaleState> previousStates =
+                manifest.getLocaleStates(merge.getTarget(), configuration);
+        final Map<String, String> inputs = new LinkedHashMap<String, String>();
+        final Map<String, List<String>> changedLocaleFileNames = new LinkedHashMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> entry : localeFileNames.entrySet()) {
+            final String locale = entry.getKey();
+            inputs.put(locale, manifest.fingerprint(directory, entry.getValue()));
+            final MergeManifest.LocaleState previousState = previousStates.get(locale);
+            if (previousState == null || !previousState.getInputs().equals(inputs.get(locale))
+                || !outputFilesExist(locale)) {
+                changedLocaleFileNames.put(locale, entry.getValue());
+            }
+        }
+        if (merge.getOmitBaseLocaleValues() && localeFileNames.containsKey(BASE_LOCALE)
+            && !changedLocaleFileNames.isEmpty()) {
+            // the final files of the other locales depend on the base locale, which must be loaded with them
+            if (changedLocaleFileNames.containsKey(BASE_LOCALE)) {
+                changedLocaleFileNames.putAll(localeFileNames);
+            } else {
+                changedLocaleFileNames.put(BASE_LOCALE, localeFileNames.get(BASE_LOCALE));
+            }
+        }
+
+        final Map<String, MergeManifest.LocaleState> states = new LinkedHashMap<String, MergeManifest.LocaleState>();
+        if (previousStates.keySet().equals(localeFileNames.keySet())
+            && changedLocaleFileNames.size() < localeFileNames.size()) {
+            if (changedLocaleFileNames.isEmpty()) {
+                log.info("=> Final file " + merge.getTarget() + " is up to date");
+                for (Map.Entry<String, MergeManifest.LocaleState> entry : previousStates.entrySet()) {
+                    metrics.setKeys(entry.getKey(), entry.getValue().getKeyCount());
+                }
+                metrics.setStatus(MergeMetrics.Status.UP_TO_DATE);
+                manifest.record(merge.getTarget(), configuration, previousStates);
+                return;
+            }
+            final Map<String, Bundle> propertiesMap = loadFiles(changedLocaleFileNames);
+            final Set<String> keySets = new HashSet<String>();
+            for (String locale : localeFileNames.keySet()) {
+                final Bundle properties = propertiesMap.get(locale);
+                states.put(locale, properties != null
+                                   ? new MergeManifest.LocaleState(inputs.get(locale), properties)
+                                   : previousStates.get(locale));
+                keySets.add(states.get(locale).getKeys());
+            }
+            // the keys class needs the keys of every locale, only known to be those of the loaded ones when they match
+            if (keySets.size() == 1 || !shouldCheckCount(merge) && merge.getKeysClass() == null) {
+                validateMessageFormats(propertiesMap);
+                if (merge.getPoolValues()) {
+                    poolValues(propertiesMap);
+                }
+                saveToFile(propertiesMap);
+                saveKeysClass(propertiesMap);
+                for (Map.Entry<String, MergeManifest.LocaleState> entry : states.entrySet()) {
+                    metrics.setKeys(entry.getKey(), entry.getValue().getKeyCount());
+                }
+                metrics.setStatus(MergeMetrics.Status.PARTIALLY_MERGED);
+                manifest.record(merge.getTarget(), configuration, states);
+                return;
+            }
+        }
+
+        final Map<String, Bundle> propertiesMap = mergeLocales(localeFileNames);
+        for (Map.Entry<String, Bundle> entry : propertiesMap.entrySet()) {
+            states.put(entry.getKey(), new MergeManifest.LocaleState(inputs.get(entry.getKey()), entry.getValue()));
+        }
+        manifest.record(merge.getTarget(), configuration, states);
     }
 
     @VisibleForTesting
-    static void processProperties(final Map<String, Properties> propertiesMap, final Merge merge, final Log log)
+    static void processProperties(final Map<String, Bundle> propertiesMap, final Merge merge, final Log log)
             throws MojoFailureException {
-        Map<String, Integer> localeSizeMap = Maps.newHashMap();
-        for (Map.Entry<String, Properties> entry : propertiesMap.entrySet()) {
+        try {
+            processProperties(propertiesMap, merge, log, MoreExecutors.sameThreadExecutor());
+        } catch (MojoExecutionException e) {
+            // escaping on the calling thread never fails with an execution exception
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Escapes and checks bundles built in memory, the bundles read by {@link #merge()} are escaped while they are
+     * parsed.
+     */
+    static void processProperties(final Map<String, Bundle> propertiesMap, final Merge merge, final Log log,
+                                  final Executor executor) throws MojoExecutionException, MojoFailureException {
+        List<Callable<Void>> escapes = Lists.newArrayList();
+        for (final Bundle properties : propertiesMap.values()) {
+            escapes.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    escapeProperties(properties);
+                    return null;
+                }
+            });
+        }
+        Tasks.invokeAll(executor, escapes);
+        logProperties(propertiesMap, merge, log);
+        checkCountMismatch(propertiesMap, merge);
+    }
+
+    /**
+     * Makes the locales share a single instance of each distinct value, and records how many values were duplicates.
+     */
+    private void poolValues(final Map<String, Bundle> propertiesMap) {
+        final Map<String, String> pool = new HashMap<String, String>();
+        int values = 0;
+        for (Bundle properties : propertiesMap.values()) {
+            for (Map.Entry<String, String> entry : properties) {
+                values++;
+                final String pooled = pool.get(entry.getValue());
+                if (pooled == null) {
+                    pool.put(entry.getValue(), entry.getValue());
+                } else if (pooled != entry.getValue()) {
+                    entry.setValue(pooled);
+                }
+            }
+        }
+        metrics.setValues(values, pool.size());
+        if (values > 0) {
+            log.info("=> Final file " + merge.getTarget() + " shares " + pool.size() + " distinct values among "
+                     + values + " (" + (100 * (values - pool.size()) / values) + "% duplicated)");
+        }
+    }
+
+    /**
+     * @return the entries of the bundle whose value is not the one of the base locale
+     */
+    private static Bundle withoutBaseValues(final Bundle properties, final Bundle base) {
+        final Bundle filtered = new Bundle(properties.size());
+        for (Map.Entry<String, String> entry : properties) {
+            final String baseValue = base.get(entry.getKey());
+            if (baseValue != entry.getValue() && !entry.getValue().equals(baseValue)) {
+                filtered.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Doubles the single quotes of every value for use with MessageFormat.
+     */
+    private static void escapeProperties(final Bundle properties) {
+        for (Map.Entry<String, String> entry : properties) {
+            final String escaped = MessageFormatEscaper.escape(entry.getValue());
+            if (escaped != entry.getValue()) {
+                entry.setValue(escaped);
+            }
+        }
+    }
+
+    private static void logProperties(final Map<String, Bundle> propertiesMap, final Merge merge, final Log log) {
+        if (log == null) {
+            return;
+        }
+        for (Map.Entry<String, Bundle> entry : propertiesMap.entrySet()) {
             List<String> emptyProperties = Lists.newArrayList();
-            for (String key : entry.getValue().stringPropertyNames()) {
-                final String property = entry.getValue().getProperty(key);
-                if (Strings.isNullOrEmpty(property)){
-                    emptyProperties.add(key);
+            for (Map.Entry<String, String> property : entry.getValue()) {
+                if (property.getValue().isEmpty()) {
+                    emptyProperties.add(property.getKey());
                 }
-                entry.getValue().setProperty(key, property.replaceAll("([^'])'([^'])", "$1''$2"));
-            }
-            localeSizeMap.put(entry.getKey(), entry.getValue().size());
-            if (log != null) {
-                if (!emptyProperties.isEmpty()){
-                    log.info("Found empty properties for final file " + merge.getTarget() 
-                             + " [" + entry.getKey() + "] : \n" 
-                             + Joiner.on("\n").join(emptyProperties));
+            }
+            logLocale(merge, log, entry.getKey(), emptyProperties, entry.getValue().size());
+        }
+    }
+
+    private static void logLocale(final Merge merge, final Log log, final String locale,
+                                  final List<String> emptyProperties, final int size) {
+        if (!emptyProperties.isEmpty()){
+            log.info("Found empty properties for final file " + merge.getTarget()
+                     + " [" + locale + "] : \n"
+                     + Joiner.on("\n").join(emptyProperties));
+        }
+        log.info("=> Final file " + merge.getTarget() + " [" + locale + "] contains " +
+                 size + " entries");
+    }
+
+    /**
+     * Checks that every locale holds the same keys. A single pass indexes, for each key, the set of locales holding
+     * it, the keys not held by every locale are then reported locale by locale.
+     */
+    @VisibleForTesting
+    static void checkCountMismatch(final Map<String, Bundle> propertiesMap, final Merge merge)
+            throws MojoFailureException {
+        if (!shouldCheckCount(merge)) {
+            return;
+        }
+        final List<String> locales = new ArrayList<String>(propertiesMap.keySet());
+        final Map<String, BitSet> presence = new HashMap<String, BitSet>();
+        for (int i = 0; i < locales.size(); i++) {
+            for (String key : propertiesMap.get(locales.get(i)).keys()) {
+                BitSet keyLocales = presence.get(key);
+                if (keyLocales == null) {
+                    keyLocales = new BitSet(locales.size());
+                    presence.put(key, keyLocales);
                 }
-                log.info("=> Final file " + merge.getTarget() + " [" + entry.getKey() + "] contains " +
-                         entry.getValue().size() + " entries");
+                keyLocales.set(i);
+            }
+        }
+        final Map<String, BitSet> lonelyKeys = new TreeMap<String, BitSet>();
+        for (Map.Entry<String, BitSet> entry : presence.entrySet()) {
+            if (entry.getValue().cardinality() != locales.size()) {
+                lonelyKeys.put(entry.getKey(), entry.getValue());
             }
         }
-        checkCountMismatch(propertiesMap, merge, localeSizeMap);
+        if (!lonelyKeys.isEmpty()) {
+            throw countMismatch(merge, locales, lonelyKeys, lonelyKeys.size());
+        }
     }
 
-    private static void checkCountMismatch(final Map<String, Properties> propertiesMap, final Merge merge,
-                                           final Map<String, Integer> localeSizeMap) throws MojoFailureException {
-        //if we got the same numbers of keys, the set will flatten every values
-        if (shouldFailIfNoMatchFromProperty()
-            && merge.getFailOnCountMismatch()
-            && new HashSet<Integer>(localeSizeMap.values()).size() != 1){
-            
-            final HashMultiset<String> multiset = HashMultiset.create();
-            for (Map.Entry<String, Properties> entry : propertiesMap.entrySet()) {
-                multiset.addAll(Maps.fromProperties(entry.getValue()).keySet());
+    /**
+     * @param lonelyKeys the keys not held by every locale, sorted, with the indexes of the locales holding them
+     * @param lonelyCount the number of keys not held by every locale, more than the reported ones when they are capped
+     * @return the failure reporting the keys missing in each locale
+     */
+    private static MojoFailureException countMismatch(final Merge merge, final List<String> locales,
+                                                      final Map<String, BitSet> lonelyKeys, final int lonelyCount) {
+        final StringBuilder details = new StringBuilder("Lonely keys are : \n")
+                .append(Joiner.on("\n").join(lonelyKeys.keySet()));
+        if (lonelyCount > lonelyKeys.size()) {
+            details.append("\n... and ").append(lonelyCount - lonelyKeys.size()).append(" more");
+        }
+        for (int i = 0; i < locales.size(); i++) {
+            final List<String> missing = Lists.newArrayList();
+            final List<String> extra = Lists.newArrayList();
+            for (Map.Entry<String, BitSet> lonelyKey : lonelyKeys.entrySet()) {
+                (lonelyKey.getValue().get(i) ? extra : missing).add(lonelyKey.getKey());
+            }
+            if (!missing.isEmpty()) {
+                details.append("\nLocale [").append(locales.get(i)).append("] is missing : \n")
+                       .append(Joiner.on("\n").join(missing));
             }
-            final int bundlesAmount = propertiesMap.keySet().size();
-            final Set<String> lonelyKeys = Sets.newHashSet(Collections2.filter(multiset, new Predicate<String>() {
+            if (!extra.isEmpty()) {
+                details.append("\nLocale [").append(locales.get(i)).append("] has keys missing in other locales : \n")
+                       .append(Joiner.on("\n").join(extra));
+            }
+        }
+        return new MojoFailureException(new TreeSet<String>(lonelyKeys.keySet()),
+                                        "Invalid property count for file : " + merge.getTarget(),
+                                        details.toString());
+    }
+
+    /**
+     * Parses every value as a {@link MessageFormat}, the locales in parallel. Malformed patterns fail the merge, the
+     * keys whose locales do not use the same arguments are reported.
+     */
+    private void validateMessageFormats(final Map<String, Bundle> propertiesMap)
+            throws MojoExecutionException, MojoFailureException {
+        if (!merge.getValidateMessageFormat() && !merge.getTemplates()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final List<String> locales = new ArrayList<String>(propertiesMap.keySet());
+        final List<String> malformed = Collections.synchronizedList(new ArrayList<String>());
+        List<Callable<Map<String, BitSet>>> validations = Lists.newArrayList();
+        for (final String locale : locales) {
+            validations.add(new Callable<Map<String, BitSet>>() {
                 @Override
-                public boolean apply(final String input) {
-                    return multiset.count(input) != bundlesAmount;
+                public Map<String, BitSet> call() {
+                    final Locale javaLocale = toLocale(locale);
+                    // only the values having arguments, to keep it small, and the malformed ones mapped to null
+                    final Map<String, BitSet> arguments = new HashMap<String, BitSet>();
+                    for (Map.Entry<String, String> property : propertiesMap.get(locale)) {
+                        final BitSet used;
+                        try {
+                            new MessageFormat(property.getValue(), javaLocale);
+                            // also rejects the argument numbers a template can not hold
+                            used = MessagePattern.parse(property.getValue()).getArguments();
+                        } catch (IllegalArgumentException e) {
+                            malformed.add("[" + locale + "] " + property.getKey() + " : " + e.getMessage());
+                            arguments.put(property.getKey(), null);
+                            continue;
+                        }
+                        if (!used.isEmpty()) {
+                            arguments.put(property.getKey(), used);
+                        }
+                    }
+                    return arguments;
                 }
-            }));
-            throw new MojoFailureException(lonelyKeys, 
-                                           "Invalid property count for file : " + merge.getTarget(), 
-                                           "Lonely keys are : \n" + Joiner.on("\n").join(lonelyKeys));
+            });
         }
+        final List<Map<String, BitSet>> localeArguments = Tasks.invokeAll(executor, validations);
+        final Set<String> keysWithArguments = new TreeSet<String>();
+        for (Map<String, BitSet> arguments : localeArguments) {
+            keysWithArguments.addAll(arguments.keySet());
+        }
+        final StringBuilder mismatches = new StringBuilder();
+        for (String key : keysWithArguments) {
+            BitSet reference = null;
+            boolean mismatch = false;
+            final StringBuilder details = new StringBuilder();
+            for (int i = 0; i < locales.size(); i++) {
+                final Map<String, BitSet> localeArgument = localeArguments.get(i);
+                BitSet arguments = localeArgument.get(key);
+                if (arguments == null) {
+                    if (localeArgument.containsKey(key) || !propertiesMap.get(locales.get(i)).containsKey(key)) {
+                        continue;
+                    }
+                    arguments = new BitSet();
+                }
+                mismatch |= reference != null && !reference.equals(arguments);
+                reference = arguments;
+                details.append(" [").append(locales.get(i)).append("] ").append(arguments);
+            }
+            if (mismatch) {
+                mismatches.append('\n').append(key).append(" :").append(details);
+            }
+        }
+        metrics.add(MergeMetrics.Phase.VALIDATE, start);
+        if (mismatches.length() > 0) {
+            log.warn("Found keys whose locales use other arguments for final file " + merge.getTarget() + " :"
+                     + mismatches);
+        }
+        if (!malformed.isEmpty()) {
+            Collections.sort(malformed);
+            final String message = malformed.size() + " malformed message format(s) found for final file "
+                                   + merge.getTarget() + " :\n" + Joiner.on("\n").join(malformed);
+            if (shouldFailIfNoMatchFromProperty()) {
+                throw new MojoFailureException(message);
+            }
+            log.warn(message);
+        }
+    }
+
+    /**
+     * @param locale the locale suffix of the files, fr_FR for instance, empty for the base locale
+     */
+    static Locale toLocale(final String locale) {
+        final String[] parts = locale.split("_", 3);
+        return new Locale(parts[0], parts.length > 1 ? parts[1] : "", parts.length > 2 ? parts[2] : "");
+    }
+
+    private static boolean shouldCheckCount(final Merge merge) {
+        return shouldFailIfNoMatchFromProperty() && merge.getFailOnCountMismatch();
     }
 
     private static Boolean shouldFailIfNoMatchFromProperty() {
         return !Boolean.valueOf(System.getProperty(ERROR_IGNORE_FLAG, "false"));
     }
 
-    private void saveToFile(final Map<String, Properties> mergedProperties) throws MojoExecutionException {
-        final String targetPropertiesFileName = merge.getTarget();
-        final String suffix = extractFileSuffix(targetPropertiesFileName);
-        final String prefix = extractFilePrefix(targetPropertiesFileName);
+    @VisibleForTesting
+    void saveToFile(final Map<String, Bundle> mergedProperties)
+            throws MojoExecutionException, MojoFailureException {
         File generated = new File(resourcePath);
-        if (!generated.exists()) {
-            final boolean mkdirs = generated.mkdirs();
-            if (!mkdirs) {
-                throw new MojoExecutionException("Could not create directory : " + resourcePath);
+        // merges sharing the output directory may run concurrently
+        if (!generated.mkdirs() && !generated.isDirectory()) {
+            throw new MojoExecutionException("Could not create directory : " + resourcePath);
+        }
+        final OutputFormat format = OutputFormat.forMerge(merge);
+        final PropertiesWriter writer = format.writesProperties() ? PropertiesWriter.forMerge(merge) : null;
+        final Bundle base = merge.getOmitBaseLocaleValues() ? mergedProperties.get(BASE_LOCALE) : null;
+        List<Callable<Void>> saves = Lists.newArrayList();
+        for (final Map.Entry<String, Bundle> propertiesEntry : mergedProperties.entrySet()) {
+            saves.add(new Callable<Void>() {
+                @Override
+                public Void call() throws MojoExecutionException {
+                    final String locale = propertiesEntry.getKey();
+                    final Bundle properties = base == null || locale.equals(BASE_LOCALE)
+                                              ? propertiesEntry.getValue()
+                                              : withoutBaseValues(propertiesEntry.getValue(), base);
+                    if (merge.getShardByPrefix()) {
+                        saveShards(locale, properties, format, writer);
+                    } else {
+                        if (format.writesProperties()) {
+                            saveToFile(getOutputFile(locale), properties, writer);
+                        }
+                        if (format.writesBinary()) {
+                            saveToFile(getOutputFile(locale, BinaryBundleWriter.EXTENSION), properties, null);
+                        }
+                    }
+                    if (merge.getTemplates()) {
+                        // every key, the templates having no parent to fall back to
+                        saveToFile(getOutputFile(locale, MessagePattern.EXTENSION),
+                                   templates(propertiesEntry.getValue()), null);
+                    }
+                    return null;
+                }
+            });
+        }
+        Tasks.invokeAll(executor, saves);
+    }
+
+    /**
+     * Writes the shards of the locale, then the index mapping their prefixes to them.
+     */
+    private void saveShards(final String locale, final Bundle properties, final OutputFormat format,
+                            final PropertiesWriter writer) throws MojoExecutionException {
+        final long maxShardSize = merge.getMaxShardSize() != null ? merge.getMaxShardSize() * 1024L : 0;
+        final List<Bundle> shards = Shards.split(properties, merge.getSortKeys(), maxShardSize);
+        final String prefix = extractFilePrefix(merge.getTarget());
+        for (int i = 0; i < shards.size(); i++) {
+            final String shard = Shards.name(prefix, i);
+            if (format.writesProperties()) {
+                saveToFile(getOutputFile(shard, locale, extractFileSuffix(merge.getTarget())), shards.get(i), writer);
+            }
+            if (format.writesBinary()) {
+                saveToFile(getOutputFile(shard, locale, BinaryBundleWriter.EXTENSION), shards.get(i), null);
             }
         }
-        for (Map.Entry<String, Properties> propertiesEntry : mergedProperties.entrySet()) {
-            File out = new File(resourcePath + File.separator + prefix + "_" + propertiesEntry.getKey() + "." + suffix);
-            OutputStream output = null;
+        // read with java.util.Properties whatever the format and the output encoding
+        final PropertiesWriter indexWriter = new PropertiesWriter(
+                merge.getSortKeys(), PropertiesWriter.toLineSeparator(merge.getLineSeparator()), Charsets.ISO_8859_1);
+        saveToFile(getOutputFile(locale, Shards.EXTENSION), Shards.index(prefix, shards), indexWriter);
+    }
+
+    private boolean outputFilesExist(final String locale) throws MojoExecutionException {
+        final OutputFormat format = OutputFormat.forMerge(merge);
+        if (merge.getShardByPrefix()) {
+            // the index is written once the shards are
+            return getOutputFile(locale, Shards.EXTENSION).isFile()
+                   && (!merge.getTemplates() || getOutputFile(locale, MessagePattern.EXTENSION).isFile())
+                   && (getKeysClassFile() == null || getKeysClassFile().isFile());
+        }
+        return (!format.writesProperties() || getOutputFile(locale).isFile())
+               && (!format.writesBinary() || getOutputFile(locale, BinaryBundleWriter.EXTENSION).isFile())
+               && (!merge.getTemplates() || getOutputFile(locale, MessagePattern.EXTENSION).isFile())
+               && (getKeysClassFile() == null || getKeysClassFile().isFile());
+    }
+
+    /**
+     * @return the template descriptors of the values, written as a binary bundle. Malformed values, only merged when
+     * errors are ignored, are left out
+     */
+    private static Bundle templates(final Bundle properties) {
+        final Bundle templates = new Bundle(properties.size());
+        for (Map.Entry<String, String> property : properties) {
             try {
+                templates.put(property.getKey(), MessagePattern.parse(property.getValue()).getDescriptor());
+            } catch (IllegalArgumentException e) {
+                // reported by the validation
+            }
+        }
+        return templates;
+    }
 
-                if (out.exists() && !out.delete()) {
-                    throw new MojoExecutionException("Could not remove file: " + out.getAbsolutePath());
-                }
+    /**
+     * @return the source file of the keys class, {@code null} when the merge does not generate one
+     */
+    private File getKeysClassFile() {
+        if (merge.getKeysClass() == null || sourcePath == null) {
+            return null;
+        }
+        return new File(sourcePath, merge.getKeysClass().replace('.', File.separatorChar) + ".java");
+    }
 
-                if (!out.createNewFile()) {
-                    throw new MojoExecutionException("Could not create file: " + out.getAbsolutePath());
-                }
+    /**
+     * Generates the class of the keys held by the locales.
+     */
+    private void saveKeysClass(final Map<String, Bundle> mergedProperties) throws MojoExecutionException {
+        final File out = getKeysClassFile();
+        if (out == null) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final Set<String> keys = new TreeSet<String>();
+        for (Bundle properties : mergedProperties.values()) {
+            keys.addAll(properties.keys());
+        }
+        final File parent = out.getParentFile();
+        if (!parent.mkdirs() && !parent.isDirectory()) {
+            throw new MojoExecutionException("Could not create directory : " + parent);
+        }
+        final boolean written = OutputFiles.writeIfChanged(
+                out, KeysClassWriter.write(merge.getKeysClass(), extractFilePrefix(merge.getTarget()),
+                                           new ArrayList<String>(keys)));
+        metrics.add(MergeMetrics.Phase.WRITE, start);
+        metrics.addOutput(written);
+    }
+
+    private File getOutputFile(final String locale) {
+        return getOutputFile(locale, extractFileSuffix(merge.getTarget()));
+    }
+
+    private File getOutputFile(final String locale, final String suffix) {
+        return getOutputFile(extractFilePrefix(merge.getTarget()), locale, suffix);
+    }
+
+    private File getOutputFile(final String prefix, final String locale, final String suffix) {
+        if (locale.equals(BASE_LOCALE) && merge.getOmitBaseLocaleValues()) {
+            // the other locales fall back to it
+            return new File(resourcePath + File.separator + prefix + "." + suffix);
+        }
+        return new File(resourcePath + File.separator + prefix + "_" + locale + "." + suffix);
+    }
+
+    /**
+     * @param writer the writer of the properties files, {@code null} to write a binary bundle
+     */
+    private void saveToFile(final File out, final Bundle properties, final PropertiesWriter writer)
+            throws MojoExecutionException {
+        final long start = System.nanoTime();
+        final byte[] content = writer != null
+                               ? writer.write(out.getName(), properties)
+                               : BinaryBundleWriter.write(properties);
+        final boolean written = OutputFiles.writeIfChanged(out, content);
+        metrics.add(MergeMetrics.Phase.WRITE, start);
+        metrics.addOutput(written);
+        if (!written && log.isDebugEnabled()) {
+            log.debug("Final file " + out.getName() + " did not change");
+        }
+    }
+
+    @VisibleForTesting
+    Map<String, Bundle> loadFiles() throws MojoExecutionException, MojoFailureException {
+        return loadFiles(groupByLocale(getFileNames()));
+    }
+
+    private List<String> getFileNames() throws MojoExecutionException {
+        if (fileIndex != null && fileIndex.getDirectory().equals(directory)) {
+            return fileIndex.getFileNames(merge);
+        }
+        return merge.getFileNames(directory);
+    }
 
-                output = new FileOutputStream(out);
-                propertiesEntry.getValue().store(output, out.getName());
-            } catch (FileNotFoundException e) {
-                throw new MojoExecutionException("Could not find file: " + out.getAbsolutePath(), e);
-            } catch (IOException e) {
-                throw new MojoExecutionException("Could not write to file: " + out.getAbsolutePath(), e);
-            } finally {
-                if (output != null) {
-                    try {
-                        output.close();
-                    } catch (IOException e) {
-                        // no can do
+    /**
+     * Groups the files by locale, keeping the scanning order of the files of each locale.
+     */
+    private static Map<String, List<String>> groupByLocale(final List<String> propertyFileNames) {
+        final Map<String, List<String>> localeFileNames = new LinkedHashMap<String, List<String>>();
+        for (String propertyFileName : propertyFileNames) {
+            String locale = extractLocaleFromFileName(propertyFileName);
+            if (!localeFileNames.containsKey(locale)) {
+                localeFileNames.put(locale, new ArrayList<String>());
+            }
+            localeFileNames.get(locale).add(propertyFileName);
+        }
+        return localeFileNames;
+    }
+
+    /**
+     * Parses every file in parallel, then reduces the fragments of each locale in the order of the files so that the
+     * last file defining a key wins, as when the files were read one after another.
+     */
+    private Map<String, Bundle> loadFiles(final Map<String, List<String>> localeFileNames)
+            throws MojoExecutionException, MojoFailureException {
+        final Charset charset = InputFiles.charset(merge);
+        final BundleSource source = BundleSources.forMerge(merge);
+        List<Callable<Bundle>> reads = Lists.newArrayList();
+        for (List<String> propertyFileNames : localeFileNames.values()) {
+            for (final String propertyFileName : propertyFileNames) {
+                final BundleSource fileSource = source != null ? source : BundleSources.forFile(propertyFileName);
+                reads.add(new Callable<Bundle>() {
+                    @Override
+                    public Bundle call() throws MojoExecutionException, MojoFailureException {
+                        return readFragment(propertyFileName, fileSource.charset(charset), fileSource);
+                    }
+                });
+            }
+        }
+        final Iterator<FutureTask<Bundle>> fragments = Tasks.runAll(executor, reads).iterator();
+        Map<String, Bundle> outMap = new LinkedHashMap<String, Bundle>();
+        for (Map.Entry<String, List<String>> entry : localeFileNames.entrySet()) {
+            final List<String> propertyFileNames = entry.getValue();
+            final List<Bundle> localeFragments = new ArrayList<Bundle>(propertyFileNames.size());
+            for (int i = 0; i < propertyFileNames.size(); i++) {
+                localeFragments.add(Tasks.get(fragments.next()));
+            }
+            final Bundle properties = reduce(entry.getKey(), propertyFileNames, localeFragments);
+            outMap.put(entry.getKey(), properties);
+            metrics.setKeys(entry.getKey(), properties.size());
+        }
+        logProperties(outMap, merge, log);
+        return outMap;
+    }
+
+    /**
+     * Merges the fragments of a locale in the order of its files, the keys defined by several files are reported.
+     */
+    private Bundle reduce(final String locale, final List<String> propertyFileNames, final List<Bundle> fragments) {
+        int size = 0;
+        for (Bundle fragment : fragments) {
+            size += fragment.size();
+        }
+        final Bundle merged = new Bundle(size);
+        List<String> duplicates = null;
+        for (int i = 0; i < fragments.size(); i++) {
+            for (Map.Entry<String, String> property : fragments.get(i)) {
+                if (merged.put(property.getKey(), property.getValue()) != null) {
+                    if (duplicates == null) {
+                        duplicates = Lists.newArrayList();
                     }
+                    duplicates.add(property.getKey() + " (" + definingFile(property.getKey(), propertyFileNames,
+                                                                           fragments, i)
+                                   + " overridden by " + propertyFileNames.get(i) + ")");
                 }
             }
         }
+        if (duplicates != null) {
+            reportDuplicates(locale, duplicates);
+        }
+        return merged;
+    }
 
+    private void reportDuplicates(final String locale, final List<String> duplicates) {
+        if (duplicates.isEmpty()) {
+            return;
+        }
+        metrics.addDuplicateKeys(duplicates.size());
+        log.warn("Found keys defined in several files for final file " + merge.getTarget()
+                 + " [" + locale + "] : \n" + Joiner.on("\n").join(duplicates));
     }
 
-    private Map<String, Properties> loadFiles() throws MojoExecutionException, MojoFailureException {
-        Map<String, Properties> outMap = new LinkedHashMap<String, Properties>();
-        for (String propertyFileName : merge.getFileNames(directory)) {
-            InputStream input = null;
-            try {
-                String locale = extractLocaleFromFileName(propertyFileName);
-                final String fullFilePath = directory + File.separator + propertyFileName;
-                input = new FileInputStream(fullFilePath);
-                final boolean b = checkKeys(propertyFileName, merge.getExcludeKeyCheck(), fullFilePath, log);
+    /**
+     * @return the last file before the given one defining the key
+     */
+    private static String definingFile(final String key, final List<String> propertyFileNames,
+                                       final List<Bundle> fragments, final int before) {
+        for (int i = before - 1; i > 0; i--) {
+            if (fragments.get(i).containsKey(key)) {
+                return propertyFileNames.get(i);
+            }
+        }
+        return propertyFileNames.get(0);
+    }
 
-                if (log.isDebugEnabled()) {
-                    log.debug("Should include properties : " + b);
-                }
-                if (b) {
-                    getMergedPropertiesForLocale(outMap, locale).load(input);
-                }
-            } catch (FileNotFoundException e) {
-                throw new MojoExecutionException("Could not find file: " + propertyFileName, e);
-            } catch (IOException e) {
-                throw new MojoExecutionException("Could not read from file: " + propertyFileName, e);
-            } finally {
-                if (input != null) {
-                    try {
-                        input.close();
-                    } catch (IOException e) {
-                        // nothing to do
+    /**
+     * Reads the given file unless the cache holds its entries.
+     */
+    private Bundle readFragment(final String propertyFileName, final Charset charset, final BundleSource source)
+            throws MojoExecutionException, MojoFailureException {
+        if (fragmentCache == null) {
+            final Bundle fragment = new Bundle();
+            readProperties(propertyFileName, charset, source, fragment);
+            return fragment;
+        }
+        final File file = new File(directory, propertyFileName);
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        Bundle fragment = fragmentCache.get(merge, file, length, lastModified);
+        if (fragment == null) {
+            fragment = new Bundle();
+            readProperties(propertyFileName, charset, source, fragment);
+            fragmentCache.put(merge, file, length, lastModified, fragment);
+        } else {
+            metrics.addCached();
+        }
+        return fragment;
+    }
+
+    private void readProperties(final String propertyFileName, final Charset charset, final BundleSource source,
+                                final Bundle merged)
+            throws MojoExecutionException, MojoFailureException {
+        readProperties(propertyFileName, charset, source, new BundleSource.Handler() {
+            @Override
+            public void property(final String key, final String value) {
+                merged.put(key, value);
+            }
+        });
+    }
+
+    /**
+     * Streams the given file to the given handler, each key being checked and each value escaped as it is read.
+     */
+    private void readProperties(final String propertyFileName, final Charset charset, final BundleSource source,
+                                final BundleSource.Handler handler)
+            throws MojoExecutionException, MojoFailureException {
+        final long start = System.nanoTime();
+        final String prefix = keyCheck.prefix(propertyFileName, log);
+        final List<String> invalidKeys = new ArrayList<String>();
+        Reader reader = null;
+        try {
+            final File file = new File(directory, propertyFileName);
+            metrics.addInput(file.length());
+            reader = openFile(file, charset);
+            source.read(reader, new BundleSource.Handler() {
+                @Override
+                public void property(final String key, final String value) throws MojoFailureException {
+                    if (prefix != null && !key.startsWith(prefix)) {
+                        invalidKeys.add(key);
                     }
+                    handler.property(key, MessageFormatEscaper.escape(value));
+                }
+            });
+        } catch (FileNotFoundException e) {
+            throw new MojoExecutionException("Could not find file: " + propertyFileName, e);
+        } catch (CharacterCodingException e) {
+            throw new MojoExecutionException("Could not decode file " + propertyFileName + " as " + charset.name(), e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read from file: " + propertyFileName, e);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Could not parse file: " + propertyFileName, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // nothing to do
                 }
             }
         }
-        return outMap;
+        metrics.add(MergeMetrics.Phase.PARSE, start);
+        if (!invalidKeys.isEmpty()) {
+            throw KeyCheck.invalidKeys(propertyFileName, prefix, invalidKeys);
+        }
     }
 
-    private Properties getMergedPropertiesForLocale(final Map<String, Properties> outMap, final String locale) {
-        if (!outMap.containsKey(locale)) {
-            outMap.put(locale, new Properties());
-        }
-        return outMap.get(locale);
+    @VisibleForTesting
+    Reader openFile(final File file, final Charset charset) throws IOException {
+        return InputFiles.open(file, charset);
     }
 
     static String extractLocaleFromFileName(final String propertyFileName) {
@@ -219,52 +1034,26 @@ public class MergeProperty {
     }
 
     static boolean checkKeys(final String propertyFileName, final String[] excludeKeyCheck,
-                             final String fileName, final Log log) throws MojoExecutionException, MojoFailureException {
-        if (propertyFileName == null) {
-            throw new NullPointerException("PropertyFileName can not be null ! ");
-        }
-        // Do not reuse the existing inputstream as the load method forwards it and there is no reset() in FIS
-        String prefixToConsider = extractFilePrefix(propertyFileName);
-        if (log.isDebugEnabled()) {
-            log.debug("Prefix to consider : " + prefixToConsider);
-        }
-        if (excludeKeyCheck != null) {
-            for (String s : excludeKeyCheck) {
-                if (prefixToConsider.matches(s)) {
-                    log.info("Found propertyFileName without prefix checking, including... [" + propertyFileName +
-                             "]");
-                    return true;
-                }
-            }
-        }
-        Properties props = new Properties();
-        InputStream input = null;
-        try {
-            input = new FileInputStream(fileName);
-            props.load(input);
-            return !containsInvalidPrefix(prefixToConsider, props);
-        } catch (IOException e) {
-            throw new MojoExecutionException("Could not read from file: " + propertyFileName, e);
-        } finally {
-            if (input != null) {
-                try {
-                    input.close();
-                } catch (IOException ioe) {
-                    //do nothing
-                }
-            }
+                             final Bundle props, final Log log) throws MojoFailureException {
+        final String prefix = checkedPrefix(propertyFileName, excludeKeyCheck, log);
+        if (prefix != null) {
+            KeyCheck.check(propertyFileName, prefix, props.keys());
         }
+        return true;
+    }
+
+    /**
+     * @return the prefix, dot included, every key of the given file must start with, {@code null} when the file is
+     * excluded from key checking
+     * @see KeyCheck#prefix(String, Log)
+     */
+    static String checkedPrefix(final String propertyFileName, final String[] excludeKeyCheck, final Log log) {
+        return new KeyCheck(excludeKeyCheck).prefix(propertyFileName, log);
     }
 
-    static boolean containsInvalidPrefix(final String prefixToConsider, final Properties props)
+    static boolean containsInvalidPrefix(final String prefixToConsider, final Bundle props)
             throws MojoFailureException {
-        final String prefix = prefixToConsider + ".";
-        for (String s : props.stringPropertyNames()) {
-            if (!s.startsWith(prefix)) {
-                throw new MojoFailureException(
-                        "An invalid property key has been found [" + s + " not beginning with " + prefix + "]");
-            }
-        }
+        KeyCheck.check(null, prefixToConsider + ".", props.keys());
         return false;
     }
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the {@link MergeMetrics} of every merge of a mojo execution, in the order the merges are configured, and
+ * renders them as a summary table or as JSON.
+ */
+public class MergeReport {
+    private static final String[] COLUMNS = {"status", "files", "bytes", "keys", "scan", "parse", "count",
+                                             "validate", "write", "total"};
+
+    private final Map<Merge, MergeMetrics> metrics = new LinkedHashMap<Merge, MergeMetrics>();
+    private volatile int indexedFiles;
+    private volatile long indexNanos;
+
+    /**
+     * Returns the metrics of the given merge, registering it on first call.
+     */
+    public synchronized MergeMetrics metrics(final Merge merge) {
+        MergeMetrics mergeMetrics = metrics.get(merge);
+        if (mergeMetrics == null) {
+            mergeMetrics = new MergeMetrics(merge.getTarget());
+            metrics.put(merge, mergeMetrics);
+        }
+        return mergeMetrics;
+    }
+
+    /**
+     * Records the scan of the directory shared by all the merges.
+     */
+    void setIndex(final int files, final long startNanos) {
+        indexedFiles = files;
+        indexNanos = System.nanoTime() - startNanos;
+    }
+
+    public int getIndexedFiles() {
+        return indexedFiles;
+    }
+
+    public long getIndexMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(indexNanos);
+    }
+
+    public synchronized List<MergeMetrics> getMetrics() {
+        return new ArrayList<MergeMetrics>(metrics.values());
+    }
+
+    /**
+     * Renders one line per merge, times are in milliseconds.
+     */
+    public String toTable() {
+        final List<MergeMetrics> all = getMetrics();
+        int targetWidth = "target".length();
+        for (MergeMetrics mergeMetrics : all) {
+            targetWidth = Math.max(targetWidth, mergeMetrics.getTarget().length());
+        }
+        final StringBuilder table = new StringBuilder();
+        table.append(Strings.padEnd("target", targetWidth, ' '));
+        for (String column : COLUMNS) {
+            table.append(Strings.padStart(column, column.equals("status") ? 18 : 10, ' '));
+        }
+        for (MergeMetrics mergeMetrics : all) {
+            table.append('\n').append(Strings.padEnd(mergeMetrics.getTarget(), targetWidth, ' '));
+            table.append(Strings.padStart(mergeMetrics.getStatus().name(), 18, ' '));
+            appendCell(table, mergeMetrics.getFiles());
+            appendCell(table, mergeMetrics.getBytes());
+            appendCell(table, totalKeys(mergeMetrics));
+            for (MergeMetrics.Phase phase : MergeMetrics.Phase.values()) {
+                appendCell(table, mergeMetrics.getMillis(phase));
+            }
+            appendCell(table, mergeMetrics.getTotalMillis());
+        }
+        table.append("\nshared scan : ").append(indexedFiles).append(" files indexed in ").append(getIndexMillis())
+             .append(" ms");
+        return table.toString();
+    }
+
+    private static void appendCell(final StringBuilder table, final long value) {
+        table.append(Strings.padStart(String.valueOf(value), 10, ' '));
+    }
+
+    private static long totalKeys(final MergeMetrics mergeMetrics) {
+        long keys = 0;
+        for (Integer localeKeys : mergeMetrics.getLocaleKeys().values()) {
+            keys += localeKeys;
+        }
+        return keys;
+    }
+
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{\"merges\":[");
+        boolean first = true;
+        for (MergeMetrics mergeMetrics : getMetrics()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"target\":").append(quote(mergeMetrics.getTarget()))
+                .append(",\"status\":").append(quote(mergeMetrics.getStatus().name()))
+                .append(",\"files\":").append(mergeMetrics.getFiles())
+                .append(",\"bytes\":").append(mergeMetrics.getBytes())
+                .append(",\"cachedFiles\":").append(mergeMetrics.getCachedFiles())
+                .append(",\"duplicateKeys\":").append(mergeMetrics.getDuplicateKeys())
+                .append(",\"values\":").append(mergeMetrics.getValues())
+                .append(",\"distinctValues\":").append(mergeMetrics.getDistinctValues())
+                .append(",\"writtenFiles\":").append(mergeMetrics.getWrittenFiles())
+                .append(",\"unchangedFiles\":").append(mergeMetrics.getUnchangedFiles())
+                .append(",\"totalMillis\":").append(mergeMetrics.getTotalMillis())
+                .append(",\"phaseMillis\":{");
+            for (MergeMetrics.Phase phase : MergeMetrics.Phase.values()) {
+                json.append(phase.ordinal() == 0 ? "" : ",")
+                    .append(quote(phase.name().toLowerCase(Locale.ROOT))).append(':')
+                    .append(mergeMetrics.getMillis(phase));
+            }
+            json.append("},\"localeKeys\":{");
+            boolean firstLocale = true;
+            for (Map.Entry<String, Integer> entry : mergeMetrics.getLocaleKeys().entrySet()) {
+                json.append(firstLocale ? "" : ",").append(quote(entry.getKey())).append(':').append(entry.getValue());
+                firstLocale = false;
+            }
+            json.append("}}");
+        }
+        return json.append("],\"index\":{\"files\":").append(indexedFiles)
+                   .append(",\"millis\":").append(getIndexMillis()).append("}}").toString();
+    }
+
+    public void writeJson(final File file) throws MojoExecutionException {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            throw new MojoExecutionException("Could not create directory : " + directory.getAbsolutePath());
+        }
+        try {
+            Files.write(toJson(), file, Charsets.UTF_8);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write to file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    static String quote(final String s) {
+        final StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.AbstractMojoExecutionException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the final files of some merges up to date : merges them once, then watches the directories of their input
+ * files and merges again the locales whose files changed.
+ * The entries of every file read and the state of every locale are kept between two merges, so that only the changed
+ * files are read again and only the changed locales are written.
+ */
+class MergeWatcher implements Closeable {
+    private final File directory;
+    private final Path root;
+    private final String resourcePath;
+    private final String sourcePath;
+    private final File runsDirectory;
+    private final List<Merge> merges;
+    private final Log log;
+    private final Executor executor;
+    private final long debounceMillis;
+    private final FragmentCache fragmentCache;
+    private final WatchService watchService;
+    private final Map<Path, WatchKey> watchKeys = new HashMap<Path, WatchKey>();
+    private final Set<String> changedPaths = new HashSet<String>();
+    private boolean rescan;
+    private boolean overflow;
+    private MergeManifest manifest;
+    private FileIndex fileIndex;
+
+    /**
+     * @param sourcePath    the directory the keys classes are generated in, {@code null} to not generate them
+     * @param runsDirectory the directory the low memory merges spill their runs to, {@code null} for a temporary one
+     * @param manifest      the state of the previous build, the state of each merge is then kept in memory only
+     * @param fragmentCache the cache of the entries of the files, which must keep them in memory
+     */
+    MergeWatcher(final File directory, final String resourcePath, final String sourcePath, final File runsDirectory,
+                 final List<Merge> merges, final Log log, final Executor executor, final long debounceMillis,
+                 final MergeManifest manifest, final FragmentCache fragmentCache) throws MojoExecutionException {
+        this.directory = directory;
+        this.root = directory.toPath();
+        this.resourcePath = resourcePath;
+        this.sourcePath = sourcePath;
+        this.runsDirectory = runsDirectory;
+        this.merges = merges;
+        this.log = log;
+        this.executor = executor;
+        this.debounceMillis = debounceMillis;
+        this.manifest = manifest;
+        this.fragmentCache = fragmentCache;
+        try {
+            watchService = root.getFileSystem().newWatchService();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not watch directory: " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Merges every bundle and starts watching the directories of their files.
+     */
+    void start() throws MojoExecutionException {
+        fileIndex = FileIndex.scan(directory, merges);
+        register();
+        merge(merges);
+    }
+
+    /**
+     * Waits for a change, then for the end of the burst of changes it belongs to : until nothing changed during
+     * the debounce delay.
+     *
+     * @param timeoutMillis how long to wait for a first change, forever when not positive
+     * @return whether something changed
+     */
+    boolean awaitChanges(final long timeoutMillis) throws InterruptedException {
+        WatchKey key = timeoutMillis > 0
+                       ? watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS)
+                       : watchService.take();
+        if (key == null) {
+            return false;
+        }
+        while (key != null) {
+            collect(key);
+            key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private void collect(final WatchKey key) {
+        final Path watched = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                rescan = true;
+                continue;
+            }
+            if (event.kind() != StandardWatchEventKinds.ENTRY_MODIFY) {
+                // created or deleted files and directories change the index
+                rescan = true;
+            }
+            changedPaths.add(root.relativize(watched.resolve((Path) event.context())).toString());
+        }
+        if (!key.reset()) {
+            // the directory has been deleted
+            watchKeys.remove(watched);
+            rescan = true;
+        }
+    }
+
+    /**
+     * Merges again the bundles whose files changed since the previous call, only the changed locales are merged.
+     *
+     * @return the merges that have been run
+     */
+    List<Merge> remerge() throws MojoExecutionException {
+        final FileIndex previousIndex = fileIndex;
+        if (rescan) {
+            fileIndex = FileIndex.scan(directory, merges);
+            register();
+        }
+        final List<Merge> changed = new ArrayList<Merge>();
+        for (Merge merge : merges) {
+            final List<String> fileNames = fileIndex.getFileNames(merge);
+            if (overflow || !Collections.disjoint(fileNames, changedPaths)
+                || !fileNames.equals(previousIndex.getFileNames(merge))) {
+                changed.add(merge);
+            }
+        }
+        changedPaths.clear();
+        rescan = false;
+        overflow = false;
+        if (!changed.isEmpty()) {
+            merge(changed);
+        }
+        return changed;
+    }
+
+    private void register() throws MojoExecutionException {
+        for (File watched : fileIndex.getDirectories()) {
+            final Path path = watched.toPath();
+            if (!watchKeys.containsKey(path)) {
+                try {
+                    watchKeys.put(path, path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                                      StandardWatchEventKinds.ENTRY_DELETE,
+                                                      StandardWatchEventKinds.ENTRY_MODIFY));
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Could not watch directory: " + watched.getAbsolutePath(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the merges, their failures are logged so that watching goes on.
+     */
+    private void merge(final List<Merge> toMerge) {
+        final long start = System.nanoTime();
+        final MergeContext context = MergeContext.builder(executor).manifest(manifest).fileIndex(fileIndex)
+                                                 .fragmentCache(fragmentCache).sourcePath(sourcePath)
+                                                 .runsDirectory(runsDirectory).build();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Merge merge : toMerge) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws MojoExecutionException, MojoFailureException {
+                    new MergeProperty(merge, resourcePath, directory, log, context).merge();
+                    return null;
+                }
+            });
+        }
+        boolean failed = false;
+        for (FutureTask<Void> task : Tasks.runAll(executor, tasks)) {
+            try {
+                Tasks.get(task);
+            } catch (AbstractMojoExecutionException e) {
+                failed = true;
+                log.error(e.getMessage());
+                log.error(e.getLongMessage());
+            }
+        }
+        manifest = manifest.next();
+        log.info((failed ? "Failed to merge" : "Merged") + " properties in "
+                 + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
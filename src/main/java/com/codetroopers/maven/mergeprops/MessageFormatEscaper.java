@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+/**
+ * Escapes single quotes for use with {@link java.text.MessageFormat}, where a single quote starts a quoted section.
+ * A lone single quote, wherever it stands in the value, is doubled. Runs of two quotes or more are considered as
+ * already escaped and are kept as is.
+ */
+final class MessageFormatEscaper {
+    private MessageFormatEscaper() {
+    }
+
+    /**
+     * @return the escaped value, the given instance itself when there is nothing to escape
+     */
+    static String escape(final String value) {
+        int quote = value.indexOf('\'');
+        if (quote < 0) {
+            return value;
+        }
+        final int length = value.length();
+        StringBuilder builder = null;
+        int copied = 0;
+        while (quote >= 0) {
+            int end = quote + 1;
+            while (end < length && value.charAt(end) == '\'') {
+                end++;
+            }
+            if (end - quote == 1) {
+                if (builder == null) {
+                    builder = new StringBuilder(length + 8);
+                }
+                builder.append(value, copied, end).append('\'');
+                copied = end;
+            }
+            quote = end < length ? value.indexOf('\'', end) : -1;
+        }
+        if (builder == null) {
+            return value;
+        }
+        return builder.append(value, copied, length).toString();
+    }
+}
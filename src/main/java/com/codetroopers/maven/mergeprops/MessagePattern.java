@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import java.util.BitSet;
+
+/**
+ * Splits a {@link java.text.MessageFormat} pattern into its literal segments and argument slots, following the
+ * rules of {@link java.text.MessageFormat#applyPattern(String)}. The pattern should have been checked by
+ * {@code MessageFormat} first, only unmatched braces and invalid argument indexes are detected here.
+ * <p/>
+ * The slots are written in a descriptor read by the {@code MessageTemplate} of the runtime module, which formats
+ * messages without parsing their pattern again. A descriptor is a sequence of segments :
+ * <pre>
+ *     LITERAL, length, the chars of the text
+ *     ARGUMENT, argument index, length, the chars of the pattern of the argument format, "{0,number,#.##}" for
+ *     instance, empty for arguments without format
+ * </pre>
+ * where the tags, indexes and lengths are single chars. Texts longer than a char can count are split.
+ */
+final class MessagePattern {
+    static final char LITERAL = 'L';
+    static final char ARGUMENT = 'A';
+    static final String EXTENSION = "templates";
+
+    private final StringBuilder descriptor = new StringBuilder();
+    private final BitSet arguments = new BitSet();
+
+    private MessagePattern() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the braces do not match or an argument index is not a number, is negative or
+     *                                  does not fit in a char
+     */
+    static MessagePattern parse(final String pattern) {
+        final MessagePattern parsed = new MessagePattern();
+        parsed.split(pattern);
+        return parsed;
+    }
+
+    /**
+     * @return the indexes of the arguments the pattern uses
+     */
+    BitSet getArguments() {
+        return arguments;
+    }
+
+    String getDescriptor() {
+        return descriptor.toString();
+    }
+
+    private void split(final String pattern) {
+        final StringBuilder text = new StringBuilder();
+        final StringBuilder index = new StringBuilder();
+        final StringBuilder format = new StringBuilder();
+        boolean inQuote = false;
+        // 0 for text, 1 for the argument index, 2 for its format type and 3 for its format style
+        int part = 0;
+        int braceStack = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (part == 0) {
+                if (c == '\'') {
+                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                        text.append(c);
+                        i++;
+                    } else {
+                        inQuote = !inQuote;
+                    }
+                } else if (c == '{' && !inQuote) {
+                    part = 1;
+                    index.setLength(0);
+                    format.setLength(0);
+                } else {
+                    text.append(c);
+                }
+            } else if (inQuote) {
+                (part == 1 ? index : format).append(c);
+                inQuote = c != '\'';
+            } else if (c == ',' && part < 3) {
+                part++;
+                format.append(c);
+            } else if (c == '}' && braceStack == 0) {
+                literal(text);
+                argument(Integer.parseInt(index.toString()), format);
+                part = 0;
+            } else {
+                if (c == '{') {
+                    braceStack++;
+                } else if (c == '}') {
+                    braceStack--;
+                } else if (c == '\'') {
+                    inQuote = true;
+                }
+                (part == 1 ? index : format).append(c);
+            }
+        }
+        if (part != 0) {
+            throw new IllegalArgumentException("Unmatched braces in the pattern.");
+        }
+        literal(text);
+    }
+
+    private void literal(final StringBuilder text) {
+        for (int start = 0; start < text.length(); start += Character.MAX_VALUE) {
+            final int end = Math.min(text.length(), start + Character.MAX_VALUE);
+            descriptor.append(LITERAL).append((char) (end - start)).append(text, start, end);
+        }
+        text.setLength(0);
+    }
+
+    /**
+     * @param format the format of the argument, from the comma following its index
+     */
+    private void argument(final int index, final StringBuilder format) {
+        if (index < 0) {
+            throw new IllegalArgumentException("negative argument number: " + index);
+        }
+        if (index > Character.MAX_VALUE) {
+            throw new IllegalArgumentException("argument number too large: " + index);
+        }
+        arguments.set(index);
+        descriptor.append(ARGUMENT).append((char) index);
+        if (format.length() == 0) {
+            descriptor.append((char) 0);
+        } else {
+            final String formatPattern = "{0" + format + "}";
+            descriptor.append((char) formatPattern.length()).append(formatPattern);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Writes generated files only when their content changes, so that their modification date is kept on no-op builds,
+ * and replaces them atomically so that a missing or half-written file is never visible.
+ */
+final class OutputFiles {
+    private OutputFiles() {
+    }
+
+    /**
+     * @return {@code true} if the file has been written, {@code false} if it already had the given content
+     */
+    static boolean writeIfChanged(final File out, final byte[] content) throws MojoExecutionException {
+        final Path target = out.toPath();
+        try {
+            if (Files.isRegularFile(target) && Files.size(target) == content.length
+                && Arrays.equals(Files.readAllBytes(target), content)) {
+                return false;
+            }
+            replace(out, content);
+            return true;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write to file: " + out.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Moves a file written next to the given one in its place, unless they have the same content.
+     *
+     * @param written a file of the directory of the given file, deleted in both cases
+     * @return {@code true} if the file has been replaced, {@code false} if it already had the content written
+     */
+    static boolean replaceIfChanged(final File written, final File out) throws MojoExecutionException {
+        final Path source = written.toPath();
+        final Path target = out.toPath();
+        try {
+            try {
+                if (Files.isRegularFile(target) && sameContent(source, target)) {
+                    return false;
+                }
+                replace(source, target);
+                return true;
+            } finally {
+                Files.deleteIfExists(source);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write to file: " + out.getAbsolutePath(), e);
+        }
+    }
+
+    private static boolean sameContent(final Path left, final Path right) throws IOException {
+        if (Files.size(left) != Files.size(right)) {
+            return false;
+        }
+        final InputStream leftIn = new BufferedInputStream(Files.newInputStream(left));
+        try {
+            final InputStream rightIn = new BufferedInputStream(Files.newInputStream(right));
+            try {
+                for (int b = leftIn.read(); b >= 0; b = leftIn.read()) {
+                    if (b != rightIn.read()) {
+                        return false;
+                    }
+                }
+                return rightIn.read() < 0;
+            } finally {
+                rightIn.close();
+            }
+        } finally {
+            leftIn.close();
+        }
+    }
+
+    /**
+     * Atomically replaces the content of the file, through a temporary file of its directory.
+     */
+    static void replace(final File out, final byte[] content) throws IOException {
+        final Path target = out.toPath();
+        final Path temp = Files.createTempFile(target.getParent(), "." + out.getName(), ".tmp");
+        try {
+            Files.write(temp, content);
+            replace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void replace(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.Locale;
+
+/**
+ * The formats the final files of a merge are written in.
+ */
+enum OutputFormat {
+    PROPERTIES(true, false),
+    BINARY(false, true),
+    BOTH(true, true);
+
+    private final boolean properties;
+    private final boolean binary;
+
+    OutputFormat(final boolean properties, final boolean binary) {
+        this.properties = properties;
+        this.binary = binary;
+    }
+
+    static OutputFormat forMerge(final Merge merge) throws MojoExecutionException {
+        if (merge.getFormat() == null) {
+            return PROPERTIES;
+        }
+        try {
+            return valueOf(merge.getFormat().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid output format: " + merge.getFormat()
+                                             + ", expected properties, binary or both", e);
+        }
+    }
+
+    boolean writesProperties() {
+        return properties;
+    }
+
+    boolean writesBinary() {
+        return binary;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * An Ant style path pattern, as used by the plexus {@code DirectoryScanner}, compiled once: {@code **} matches any
+ * number of directories, {@code *} and {@code ?} match characters of a single name. A pattern ending with a
+ * separator matches everything below that directory.
+ * Paths are given as their names, relative to the scanned directory.
+ */
+class PathPattern {
+    private static final Object ANY_DIRECTORIES = new Object();
+
+    /**
+     * For each name of the pattern, {@link #ANY_DIRECTORIES}, a literal {@link String} or a compiled {@link Pattern}.
+     */
+    private final Object[] names;
+    private final String pattern;
+
+    PathPattern(final String pattern) {
+        this.pattern = pattern;
+        String normalized = pattern.replace('\\', '/');
+        if (normalized.endsWith("/")) {
+            normalized += "**";
+        }
+        final List<Object> compiled = new ArrayList<Object>();
+        for (String name : normalized.split("/")) {
+            if (name.isEmpty() || (name.equals("**") && !compiled.isEmpty()
+                                   && compiled.get(compiled.size() - 1) == ANY_DIRECTORIES)) {
+                continue;
+            }
+            compiled.add(compile(name));
+        }
+        names = compiled.toArray();
+    }
+
+    private static Object compile(final String name) {
+        if (name.equals("**")) {
+            return ANY_DIRECTORIES;
+        }
+        if (name.indexOf('*') < 0 && name.indexOf('?') < 0) {
+            return name;
+        }
+        final StringBuilder regex = new StringBuilder();
+        int literal = 0;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal < i) {
+                    regex.append(Pattern.quote(name.substring(literal, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                literal = i + 1;
+            }
+        }
+        if (literal < name.length()) {
+            regex.append(Pattern.quote(name.substring(literal)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * @return whether the whole path matches
+     */
+    boolean matches(final String[] path) {
+        return matches(0, names.length, path, 0);
+    }
+
+    /**
+     * @return whether the names of the pattern from {@code name} to {@code end} match the path from {@code segment}
+     */
+    private boolean matches(final int name, final int end, final String[] path, final int segment) {
+        if (name == end) {
+            return segment == path.length;
+        }
+        if (names[name] == ANY_DIRECTORIES) {
+            for (int next = segment; next <= path.length; next++) {
+                if (matches(name + 1, end, path, next)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return segment < path.length && matches(names[name], path[segment])
+               && matches(name + 1, end, path, segment + 1);
+    }
+
+    /**
+     * @return whether a path below the given directory may match
+     */
+    boolean mayMatchBelow(final String[] directory) {
+        for (int i = 0; i < directory.length; i++) {
+            if (i == names.length) {
+                return false;
+            }
+            if (names[i] == ANY_DIRECTORIES) {
+                return true;
+            }
+            if (!matches(names[i], directory[i])) {
+                return false;
+            }
+        }
+        return directory.length < names.length;
+    }
+
+    /**
+     * @return whether every path below the given directory matches
+     */
+    boolean matchesAllBelow(final String[] directory) {
+        if (names.length == 0 || names[names.length - 1] != ANY_DIRECTORIES) {
+            return false;
+        }
+        // the pattern without its trailing ** matching the directory
+        return matches(0, names.length - 1, directory, 0);
+    }
+
+    private static boolean matches(final Object name, final String segment) {
+        return name instanceof String ? name.equals(segment) : ((Pattern) name).matcher(segment).matches();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
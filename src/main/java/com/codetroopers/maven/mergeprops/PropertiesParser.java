@@ -0,0 +1,223 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streams the entries of a properties file to a {@link BundleSource.Handler}, following the format of
+ * {@link java.util.Properties#load(Reader)} : comment lines, continuation lines, {@code \\uXXXX} and character
+ * escapes, and {@code =}, {@code :} or whitespace key separators.
+ * Only the current logical line is held in memory, the handler decides what to keep.
+ */
+class PropertiesParser {
+    private final Reader reader;
+    private final char[] in = new char[8192];
+    private int inLimit;
+    private int inOffset;
+    private char[] line = new char[256];
+    private char[] converted = new char[256];
+
+    PropertiesParser(final Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the input contains a malformed {@code \\uXXXX} escape
+     */
+    static void parse(final Reader reader, final BundleSource.Handler handler)
+            throws IOException, MojoFailureException {
+        new PropertiesParser(reader).parse(handler);
+    }
+
+    void parse(final BundleSource.Handler handler) throws IOException, MojoFailureException {
+        int limit;
+        while ((limit = readLine()) >= 0) {
+            int keyLength = 0;
+            int valueStart = limit;
+            boolean hasSeparator = false;
+            boolean precedingBackslash = false;
+            while (keyLength < limit) {
+                final char c = line[keyLength];
+                if ((c == '=' || c == ':') && !precedingBackslash) {
+                    valueStart = keyLength + 1;
+                    hasSeparator = true;
+                    break;
+                } else if ((c == ' ' || c == '\t' || c == '\f') && !precedingBackslash) {
+                    valueStart = keyLength + 1;
+                    break;
+                }
+                precedingBackslash = c == '\\' && !precedingBackslash;
+                keyLength++;
+            }
+            while (valueStart < limit) {
+                final char c = line[valueStart];
+                if (c != ' ' && c != '\t' && c != '\f') {
+                    if (!hasSeparator && (c == '=' || c == ':')) {
+                        hasSeparator = true;
+                    } else {
+                        break;
+                    }
+                }
+                valueStart++;
+            }
+            handler.property(convert(0, keyLength), convert(valueStart, limit - valueStart));
+        }
+    }
+
+    private boolean fill() throws IOException {
+        inLimit = reader.read(in);
+        inOffset = 0;
+        return inLimit > 0;
+    }
+
+    /**
+     * Reads the next logical line into {@link #line}, without its leading whitespace and with its continuation lines
+     * appended.
+     *
+     * @return the length of the line, -1 at the end of the input
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        boolean skipWhiteSpace = true;
+        boolean isCommentLine = false;
+        boolean isNewLine = true;
+        boolean appendedLineBegin = false;
+        boolean precedingBackslash = false;
+        boolean skipLF = false;
+        while (true) {
+            if (inOffset >= inLimit && !fill()) {
+                if (length == 0 || isCommentLine) {
+                    return -1;
+                }
+                return precedingBackslash ? length - 1 : length;
+            }
+            final char c = in[inOffset++];
+            if (skipLF) {
+                skipLF = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            if (skipWhiteSpace) {
+                if (c == ' ' || c == '\t' || c == '\f') {
+                    continue;
+                }
+                if (!appendedLineBegin && (c == '\r' || c == '\n')) {
+                    continue;
+                }
+                skipWhiteSpace = false;
+                appendedLineBegin = false;
+            }
+            if (isNewLine) {
+                isNewLine = false;
+                if (c == '#' || c == '!') {
+                    isCommentLine = true;
+                    continue;
+                }
+            }
+            if (c != '\n' && c != '\r') {
+                if (isCommentLine) {
+                    continue;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = c;
+                precedingBackslash = c == '\\' && !precedingBackslash;
+            } else if (isCommentLine || length == 0) {
+                isCommentLine = false;
+                isNewLine = true;
+                skipWhiteSpace = true;
+                length = 0;
+            } else if (precedingBackslash) {
+                length--;
+                skipWhiteSpace = true;
+                appendedLineBegin = true;
+                precedingBackslash = false;
+                skipLF = c == '\r';
+            } else {
+                return length;
+            }
+        }
+    }
+
+    /**
+     * Converts the escapes of the given part of {@link #line}.
+     */
+    private String convert(final int offset, final int length) {
+        final int end = offset + length;
+        int backslash = offset;
+        while (backslash < end && line[backslash] != '\\') {
+            backslash++;
+        }
+        if (backslash == end) {
+            return new String(line, offset, length);
+        }
+        if (converted.length < length) {
+            converted = new char[Math.max(length, converted.length * 2)];
+        }
+        int out = backslash - offset;
+        System.arraycopy(line, offset, converted, 0, out);
+        int i = backslash;
+        while (i < end) {
+            char c = line[i++];
+            if (c == '\\' && i < end) {
+                c = line[i++];
+                if (c == 'u') {
+                    if (i + 4 > end) {
+                        throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                    }
+                    int value = 0;
+                    for (int j = 0; j < 4; j++) {
+                        final int digit = Character.digit(line[i++], 16);
+                        if (digit < 0) {
+                            throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                        }
+                        value = (value << 4) + digit;
+                    }
+                    converted[out++] = (char) value;
+                } else {
+                    switch (c) {
+                        case 't':
+                            c = '\t';
+                            break;
+                        case 'r':
+                            c = '\r';
+                            break;
+                        case 'n':
+                            c = '\n';
+                            break;
+                        case 'f':
+                            c = '\f';
+                            break;
+                        default:
+                            break;
+                    }
+                    converted[out++] = c;
+                }
+            } else if (c != '\\') {
+                converted[out++] = c;
+            }
+        }
+        return new String(converted, 0, out);
+    }
+}
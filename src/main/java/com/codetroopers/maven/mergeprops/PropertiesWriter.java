@@ -0,0 +1,254 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Writes properties in the {@link Properties#load(java.io.Reader)} format, without the date comment of
+ * {@link Properties#store(java.io.OutputStream, String)} and in a stable key order, so that the same properties
+ * always give the same bytes.
+ * With the ISO-8859-1 encoding every character outside of printable ASCII is written as a {@code \\uXXXX} escape,
+ * exactly like {@link Properties#store(java.io.OutputStream, String)}. With any other encoding only the characters
+ * the encoding can not represent are escaped.
+ */
+class PropertiesWriter {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final Comparator<Map.Entry<String, String>> KEY_ORDER =
+            new Comparator<Map.Entry<String, String>>() {
+                @Override
+                public int compare(final Map.Entry<String, String> o1, final Map.Entry<String, String> o2) {
+                    return o1.getKey().compareTo(o2.getKey());
+                }
+            };
+
+    private final boolean sortKeys;
+    private final String lineSeparator;
+    private final Charset charset;
+    private final boolean escapeUnicode;
+
+    PropertiesWriter(final boolean sortKeys, final String lineSeparator, final Charset charset) {
+        this.sortKeys = sortKeys;
+        this.lineSeparator = lineSeparator;
+        this.charset = charset;
+        this.escapeUnicode = Charsets.ISO_8859_1.equals(charset) || Charsets.US_ASCII.equals(charset);
+    }
+
+    static PropertiesWriter forMerge(final Merge merge) throws MojoExecutionException {
+        try {
+            return new PropertiesWriter(merge.getSortKeys(), toLineSeparator(merge.getLineSeparator()),
+                                        Charset.forName(merge.getOutputEncoding()));
+        } catch (IllegalCharsetNameException e) {
+            throw new MojoExecutionException("Invalid output encoding: " + merge.getOutputEncoding(), e);
+        } catch (UnsupportedCharsetException e) {
+            throw new MojoExecutionException("Unsupported output encoding: " + merge.getOutputEncoding(), e);
+        }
+    }
+
+    /**
+     * Accepts {@code LF}, {@code CRLF}, {@code CR} or the separator itself.
+     */
+    static String toLineSeparator(final String lineSeparator) {
+        if ("LF".equalsIgnoreCase(lineSeparator)) {
+            return "\n";
+        }
+        if ("CRLF".equalsIgnoreCase(lineSeparator)) {
+            return "\r\n";
+        }
+        if ("CR".equalsIgnoreCase(lineSeparator)) {
+            return "\r";
+        }
+        return lineSeparator;
+    }
+
+    /**
+     * Renders the properties, preceded by the given comment line when it is not {@code null}.
+     */
+    byte[] write(final String comment, final Bundle properties) throws MojoExecutionException {
+        List<Map.Entry<String, String>> entries = new ArrayList<Map.Entry<String, String>>(properties.size());
+        for (Map.Entry<String, String> entry : properties) {
+            entries.add(entry);
+        }
+        if (sortKeys) {
+            Collections.sort(entries, KEY_ORDER);
+        }
+        final CharsetEncoder encoder = charset.newEncoder();
+        // rough guess avoiding most of the resizing
+        final StringBuilder builder = new StringBuilder(entries.size() * 64);
+        if (comment != null) {
+            builder.append('#');
+            appendEscaped(builder, comment, false, encoder);
+            builder.append(lineSeparator);
+        }
+        for (Map.Entry<String, String> entry : entries) {
+            appendEscaped(builder, entry.getKey(), true, encoder);
+            builder.append('=');
+            appendEscaped(builder, entry.getValue(), false, encoder);
+            builder.append(lineSeparator);
+        }
+        try {
+            final ByteBuffer bytes = charset.newEncoder().encode(CharBuffer.wrap(builder));
+            final byte[] content = new byte[bytes.remaining()];
+            bytes.get(content);
+            return content;
+        } catch (CharacterCodingException e) {
+            throw new MojoExecutionException("Could not encode properties to " + charset.name(), e);
+        }
+    }
+
+    /**
+     * Opens a stream the properties are written to one at a time, in the order they are given, for the bundles that
+     * are not held in memory.
+     *
+     * @param comment the comment line written first, {@code null} for none
+     */
+    Output open(final OutputStream out, final String comment) throws IOException {
+        return new Output(out, comment);
+    }
+
+    /**
+     * Escapes as {@link Properties#store(java.io.OutputStream, String)} does: every space of a key, only the leading
+     * space of a value.
+     */
+    private void appendEscaped(final StringBuilder builder, final String s, final boolean key,
+                               final CharsetEncoder encoder) {
+        final int length = s.length();
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c > 0x20 && c < 0x7f) {
+                switch (c) {
+                    case '\\':
+                    case '=':
+                    case ':':
+                    case '#':
+                    case '!':
+                        builder.append('\\');
+                        break;
+                    default:
+                        break;
+                }
+                builder.append(c);
+                continue;
+            }
+            switch (c) {
+                case ' ':
+                    if (i == 0 || key) {
+                        builder.append('\\');
+                    }
+                    builder.append(' ');
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x7f || escapeUnicode || !canEncode(s, i, encoder)) {
+                        appendUnicode(builder, c);
+                    } else {
+                        builder.append(c);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Writes the same bytes as {@link #write(String, Bundle)} for the properties given in its order.
+     */
+    final class Output implements Closeable {
+        private final Writer writer;
+        private final CharsetEncoder encoder = charset.newEncoder();
+        private final StringBuilder line = new StringBuilder();
+
+        private Output(final OutputStream out, final String comment) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, charset.newEncoder()));
+            if (comment != null) {
+                line.append('#');
+                appendEscaped(line, comment, false, encoder);
+                writeLine();
+            }
+        }
+
+        void write(final String key, final String value) throws IOException {
+            appendEscaped(line, key, true, encoder);
+            line.append('=');
+            appendEscaped(line, value, false, encoder);
+            writeLine();
+        }
+
+        private void writeLine() throws IOException {
+            line.append(lineSeparator);
+            writer.append(line);
+            line.setLength(0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static boolean canEncode(final String s, final int i, final CharsetEncoder encoder) {
+        final char c = s.charAt(i);
+        if (Character.isHighSurrogate(c)) {
+            return i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))
+                   && encoder.canEncode(s.subSequence(i, i + 2));
+        }
+        if (Character.isLowSurrogate(c)) {
+            return i > 0 && Character.isHighSurrogate(s.charAt(i - 1))
+                   && encoder.canEncode(s.subSequence(i - 1, i + 1));
+        }
+        return encoder.canEncode(c);
+    }
+
+    private static void appendUnicode(final StringBuilder builder, final char c) {
+        builder.append('\\').append('u')
+               .append(HEX_DIGITS[(c >> 12) & 0xF])
+               .append(HEX_DIGITS[(c >> 8) & 0xF])
+               .append(HEX_DIGITS[(c >> 4) & 0xF])
+               .append(HEX_DIGITS[c & 0xF]);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.MapMaker;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The state shared by the merges of all the modules of a reactor build : the checked and escaped entries of every
+ * file read, so that the modules merging the same files, even into other targets, only read them once. It lives in
+ * the class loader of the plugin, which maven shares between the modules using the same plugin version, as long as
+ * the build it belongs to, and is thread safe for parallel builds.
+ * <p/>
+ * The scans of the directories are not shared : a module may generate files into a directory merged by the next
+ * ones. The entries of a file are only reused while its length and modification date are unchanged.
+ */
+final class ReactorCache {
+    /**
+     * By build, the build being weakly referenced so that its cache is dropped with it, even when the class loader
+     * of the plugin outlives it.
+     */
+    private static final ConcurrentMap<Object, ReactorCache> BUILDS = new MapMaker().weakKeys().makeMap();
+
+    private final FragmentCache fragmentCache;
+
+    private ReactorCache(final FragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * @param build         identifies the build, compared by identity, it must be the same object for all its modules
+     * @param fragmentCache creates the cache of the entries of the files, when the build has no cache yet
+     */
+    static synchronized ReactorCache forBuild(final Object build, final Supplier<FragmentCache> fragmentCache) {
+        ReactorCache cache = BUILDS.get(build);
+        if (cache == null) {
+            cache = new ReactorCache(fragmentCache.get());
+            BUILDS.put(build, cache);
+        }
+        return cache;
+    }
+
+    FragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The split of the final file of a locale by key prefix, the part of the keys before their first dot. A shard holds
+ * whole prefixes, so that the index of the locale maps each prefix to a single shard and a consumer only loads the
+ * shards of the prefixes it uses.
+ */
+final class Shards {
+    /**
+     * The extension of the index of a locale, a properties file mapping each prefix to its shard.
+     */
+    static final String EXTENSION = "shards";
+
+    private Shards() {
+    }
+
+    /**
+     * @return the part of the key before its first dot, the whole key when it has none
+     */
+    static String prefix(final String key) {
+        final int dot = key.indexOf('.');
+        return dot < 0 ? key : key.substring(0, dot);
+    }
+
+    /**
+     * @return the base name of a shard, {@code language-0} for the first shard of {@code language}
+     */
+    static String name(final String prefix, final int shard) {
+        return prefix + "-" + shard;
+    }
+
+    /**
+     * @param sortKeys whether the prefixes should be sorted, otherwise they are kept in the order of their first key
+     * @param maxSize  the size, in characters, up to which consecutive prefixes share a shard, 0 for a shard per
+     *                 prefix. A prefix larger than it has a shard of its own
+     */
+    static List<Bundle> split(final Bundle properties, final boolean sortKeys, final long maxSize) {
+        final Map<String, Bundle> prefixes = sortKeys
+                                             ? new TreeMap<String, Bundle>()
+                                             : new LinkedHashMap<String, Bundle>();
+        for (Map.Entry<String, String> property : properties) {
+            final String prefix = prefix(property.getKey());
+            Bundle prefixed = prefixes.get(prefix);
+            if (prefixed == null) {
+                prefixed = new Bundle();
+                prefixes.put(prefix, prefixed);
+            }
+            prefixed.put(property.getKey(), property.getValue());
+        }
+        if (maxSize <= 0) {
+            return new ArrayList<Bundle>(prefixes.values());
+        }
+        final List<Bundle> shards = new ArrayList<Bundle>();
+        Bundle shard = null;
+        long size = 0;
+        for (Bundle prefixed : prefixes.values()) {
+            final long prefixSize = size(prefixed);
+            if (shard == null || size + prefixSize > maxSize) {
+                shard = new Bundle();
+                shards.add(shard);
+                size = 0;
+            }
+            shard.putAll(prefixed);
+            size += prefixSize;
+        }
+        return shards;
+    }
+
+    /**
+     * @return the index mapping each prefix to the name of its shard
+     */
+    static Bundle index(final String prefix, final List<Bundle> shards) {
+        final Bundle index = new Bundle();
+        for (int i = 0; i < shards.size(); i++) {
+            final String name = name(prefix, i);
+            for (String key : shards.get(i).keys()) {
+                index.put(prefix(key), name);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of characters of the lines of the bundle, escapes left aside
+     */
+    private static long size(final Bundle properties) {
+        long size = 0;
+        for (Map.Entry<String, String> property : properties) {
+            size += property.getKey().length() + property.getValue().length() + 2;
+        }
+        return size;
+    }
+}
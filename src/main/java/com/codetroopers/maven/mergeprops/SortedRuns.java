@@ -0,0 +1,352 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The entries of a locale too large to be held in memory : they are sorted by runs of a bounded size, each full run
+ * being spilled to a temporary file, then read back merged in key order, a single entry of each run at a time. As
+ * when they are put in a {@link Bundle}, the last entry put of a key wins.
+ */
+final class SortedRuns implements Closeable {
+    /**
+     * By key, then in the order the entries have been put.
+     */
+    private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(final Entry left, final Entry right) {
+            final int comparison = left.key.compareTo(right.key);
+            return comparison != 0 ? comparison : Long.compare(left.position, right.position);
+        }
+    };
+
+    private final File directory;
+    private final int runSize;
+    private final List<File> runs = new ArrayList<File>();
+    private List<Entry> buffer = new ArrayList<Entry>();
+    private long position;
+
+    /**
+     * @param directory the directory the runs are spilled to
+     * @param runSize   the number of entries held in memory before they are spilled
+     */
+    SortedRuns(final File directory, final int runSize) {
+        this.directory = directory;
+        this.runSize = runSize;
+    }
+
+    /**
+     * @param file the index of the file the entry has been read from, to report the keys defined by several files
+     */
+    void put(final int file, final String key, final String value) {
+        buffer.add(new Entry(key, value, file, position++));
+        if (buffer.size() >= runSize) {
+            try {
+                spill();
+            } catch (IOException e) {
+                // entries are put by the handlers of the bundle sources, which can not throw it
+                throw new SpillException(e);
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(buffer, ENTRY_ORDER);
+        final File run = File.createTempFile("run", ".bin", directory);
+        runs.add(run);
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(run));
+        try {
+            final BinaryOutput entry = new BinaryOutput();
+            for (Entry spilled : buffer) {
+                entry.writeString(spilled.key);
+                entry.writeString(spilled.value);
+                entry.writeVarInt(spilled.file);
+                entry.writeLong(spilled.position);
+                entry.writeTo(out);
+                entry.reset();
+            }
+        } finally {
+            out.close();
+        }
+        buffer = new ArrayList<Entry>();
+    }
+
+    /**
+     * Reads the entries back, no entry can be put once they are.
+     *
+     * @param fileNames the names of the files the entries have been read from
+     */
+    Cursor open(final List<String> fileNames) throws IOException {
+        Collections.sort(buffer, ENTRY_ORDER);
+        final Cursor cursor = new Cursor(fileNames, runs.size() + 1);
+        try {
+            for (File run : runs) {
+                cursor.add(new FileRun(run));
+            }
+        } catch (IOException e) {
+            cursor.close();
+            throw e;
+        }
+        cursor.add(new BufferRun(buffer.iterator()));
+        buffer = null;
+        return cursor;
+    }
+
+    /**
+     * Deletes the spilled runs.
+     */
+    @Override
+    public void close() {
+        for (File run : runs) {
+            if (!run.delete()) {
+                run.deleteOnExit();
+            }
+        }
+        runs.clear();
+    }
+
+    /**
+     * Thrown when a run can not be spilled.
+     */
+    static final class SpillException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SpillException(final IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * The entries of every run, merged in key order.
+     */
+    static final class Cursor implements Closeable {
+        private final List<String> fileNames;
+        private final PriorityQueue<Run> queue;
+        private final List<Run> runs = new ArrayList<Run>();
+        private final List<String> duplicates = new ArrayList<String>();
+        private String key;
+        private String value;
+
+        private Cursor(final List<String> fileNames, final int runCount) {
+            this.fileNames = fileNames;
+            queue = new PriorityQueue<Run>(runCount, new Comparator<Run>() {
+                @Override
+                public int compare(final Run left, final Run right) {
+                    return ENTRY_ORDER.compare(left.entry, right.entry);
+                }
+            });
+        }
+
+        private void add(final Run run) throws IOException {
+            runs.add(run);
+            if (run.next()) {
+                queue.add(run);
+            }
+        }
+
+        /**
+         * Moves to the next key, the value being the last one put for it.
+         *
+         * @return {@code false} once every entry has been read
+         */
+        boolean next() throws IOException {
+            if (queue.isEmpty()) {
+                key = null;
+                value = null;
+                return false;
+            }
+            Entry entry = poll();
+            while (!queue.isEmpty() && queue.peek().entry.key.equals(entry.key)) {
+                final Entry overriding = poll();
+                if (overriding.file != entry.file) {
+                    duplicates.add(entry.key + " (" + fileNames.get(entry.file) + " overridden by "
+                                   + fileNames.get(overriding.file) + ")");
+                }
+                entry = overriding;
+            }
+            key = entry.key;
+            value = entry.value;
+            return true;
+        }
+
+        private Entry poll() throws IOException {
+            final Run run = queue.poll();
+            final Entry entry = run.entry;
+            if (run.next()) {
+                queue.add(run);
+            }
+            return entry;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        String getValue() {
+            return value;
+        }
+
+        /**
+         * @return the keys defined by several files read so far, with the files defining them
+         */
+        List<String> getDuplicates() {
+            return duplicates;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Run run : runs) {
+                run.close();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String value;
+        private final int file;
+        private final long position;
+
+        Entry(final String key, final String value, final int file, final long position) {
+            this.key = key;
+            this.value = value;
+            this.file = file;
+            this.position = position;
+        }
+    }
+
+    private abstract static class Run implements Closeable {
+        Entry entry;
+
+        /**
+         * Moves to the next entry of the run.
+         *
+         * @return {@code false} at the end of the run
+         */
+        abstract boolean next() throws IOException;
+    }
+
+    /**
+     * The entries not spilled.
+     */
+    private static final class BufferRun extends Run {
+        private final Iterator<Entry> entries;
+
+        BufferRun(final Iterator<Entry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        boolean next() {
+            entry = entries.hasNext() ? entries.next() : null;
+            return entry != null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A spilled run, read as {@link BinaryOutput} writes it.
+     */
+    private static final class FileRun extends Run {
+        private final InputStream in;
+
+        FileRun(final File run) throws IOException {
+            in = new BufferedInputStream(new FileInputStream(run));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            final int first = in.read();
+            if (first < 0) {
+                entry = null;
+                return false;
+            }
+            final String key = readString(readVarInt(first));
+            final String value = readString(readVarInt(read()));
+            final int file = readVarInt(read());
+            final long position = (long) readInt() << 32 | readInt() & 0xffffffffL;
+            entry = new Entry(key, value, file, position);
+            return true;
+        }
+
+        private int read() throws IOException {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated run");
+            }
+            return b;
+        }
+
+        private int readInt() throws IOException {
+            return read() << 24 | read() << 16 | read() << 8 | read();
+        }
+
+        private int readVarInt(final int first) throws IOException {
+            int value = first & 0x7f;
+            int b = first;
+            for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+                b = read();
+                value |= (b & 0x7f) << shift;
+            }
+            return value;
+        }
+
+        private String readString(final int length) throws IOException {
+            final char[] chars = new char[length];
+            for (int i = 0; i < chars.length; i++) {
+                final int b = read();
+                if (b < 0x80) {
+                    chars[i] = (char) b;
+                } else if (b < 0xe0) {
+                    chars[i] = (char) ((b & 0x1f) << 6 | read() & 0x3f);
+                } else {
+                    chars[i] = (char) ((b & 0x0f) << 12 | (read() & 0x3f) << 6 | read() & 0x3f);
+                }
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
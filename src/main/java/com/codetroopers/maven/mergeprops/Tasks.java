@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs independent tasks on a bounded executor.
+ * The calling thread runs every task the executor has not started yet, so tasks submitted from a task running on
+ * the same executor (merges, then locales of a merge) can never wait on a starved pool.
+ */
+final class Tasks {
+    private Tasks() {
+    }
+
+    /**
+     * Runs all the callables and returns their results in the order of the given list.
+     * The first failure (in list order) is rethrown once every task has completed.
+     */
+    static <T> List<T> invokeAll(final Executor executor, final List<? extends Callable<T>> callables)
+            throws MojoExecutionException, MojoFailureException {
+        final List<T> results = new ArrayList<T>(callables.size());
+        for (FutureTask<T> task : runAll(executor, callables)) {
+            results.add(get(task));
+        }
+        return results;
+    }
+
+    /**
+     * Runs all the callables and returns the completed tasks in the order of the given list.
+     */
+    static <T> List<FutureTask<T>> runAll(final Executor executor, final List<? extends Callable<T>> callables) {
+        final List<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>(callables.size());
+        for (Callable<T> callable : callables) {
+            final FutureTask<T> task = new FutureTask<T>(callable);
+            tasks.add(task);
+            executor.execute(task);
+        }
+        for (FutureTask<T> task : tasks) {
+            // no-op when the executor already picked the task
+            task.run();
+        }
+        return tasks;
+    }
+
+    /**
+     * Waits for the task and unwraps the mojo exceptions it may have thrown.
+     */
+    static <T> T get(final FutureTask<T> task) throws MojoExecutionException, MojoFailureException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while merging properties", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof MojoExecutionException) {
+                throw (MojoExecutionException) cause;
+            }
+            if (cause instanceof MojoFailureException) {
+                throw (MojoFailureException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MojoExecutionException(cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Merges the properties files, then merges them again each time they change, until the build is stopped.
+ * Only the locales whose files changed are merged again, the failures are logged and do not stop watching.
+ *
+ * @goal watch
+ * @requiresProject
+ */
+public class WatchMojo extends MergeMojo {
+    /**
+     * How long, in milliseconds, the files must stay unchanged before merging again, so that a burst of changes
+     * (an editor saving several files) is merged once.
+     *
+     * @parameter expression="${merge.debounce}" default-value="50"
+     */
+    private long debounce;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        final String resourcePath = attachResourcePathToBuild();
+        final String sourcePath = attachSourcePathToBuild();
+        final ExecutorService executor = createExecutor();
+        final FragmentCache fragmentCache = createFragmentCache(true);
+        MergeWatcher watcher = null;
+        try {
+            watcher = new MergeWatcher(getDirectory(), resourcePath, sourcePath, getRunsDirectory(), getMerges(),
+                                       getLog(), executor, debounce, MergeManifest.load(getOutputDirectory()),
+                                       fragmentCache);
+            watcher.start();
+            getLog().info("Watching " + getDirectory() + " for changes, press Ctrl+C to stop");
+            while (!Thread.currentThread().isInterrupted()) {
+                watcher.awaitChanges(0);
+                watcher.remerge();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+            fragmentCache.evict();
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException e) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+}
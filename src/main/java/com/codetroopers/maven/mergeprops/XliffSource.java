@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import org.apache.maven.plugin.MojoFailureException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Streams the translation units of an XLIFF 1.2 ({@code trans-unit}) or 2.0 ({@code unit}) file : the key of a unit
+ * is its {@code resname} (1.2) or {@code name} (2.0), or else its {@code id}, its value the text of its target, or of
+ * its source when it has no target. The text of the segments of a unit, and of the inline elements they hold, is
+ * concatenated. Files are read as UTF-8, DTDs and external entities are not processed.
+ */
+final class XliffSource implements BundleSource {
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @Override
+    public Charset charset(final Charset configured) {
+        return Charsets.UTF_8;
+    }
+
+    @Override
+    public void read(final Reader reader, final Handler handler) throws IOException, MojoFailureException {
+        try {
+            final XMLStreamReader xml;
+            synchronized (FACTORY) {
+                xml = FACTORY.createXMLStreamReader(reader);
+            }
+            try {
+                read(xml, handler);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Malformed XLIFF, " + e.getMessage(), e);
+        }
+    }
+
+    private static void read(final XMLStreamReader xml, final Handler handler)
+            throws XMLStreamException, MojoFailureException {
+        final StringBuilder source = new StringBuilder();
+        final StringBuilder target = new StringBuilder();
+        String key = null;
+        boolean hasTarget = false;
+        // the text being read, and the depth of the elements nested in its source or target element
+        StringBuilder text = null;
+        int depth = 0;
+        while (xml.hasNext()) {
+            switch (xml.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    final String name = xml.getLocalName();
+                    if (text != null) {
+                        depth++;
+                    } else if ("trans-unit".equals(name) || "unit".equals(name)) {
+                        key = xml.getAttributeValue(null, "trans-unit".equals(name) ? "resname" : "name");
+                        if (key == null) {
+                            key = xml.getAttributeValue(null, "id");
+                        }
+                        if (key == null) {
+                            throw new IllegalArgumentException("Malformed XLIFF, " + name + " without id at line "
+                                                               + xml.getLocation().getLineNumber());
+                        }
+                        source.setLength(0);
+                        target.setLength(0);
+                        hasTarget = false;
+                    } else if (key != null && "alt-trans".equals(name)) {
+                        // the alternative translations of a XLIFF 1.2 unit
+                        skipElement(xml);
+                    } else if (key != null && "source".equals(name)) {
+                        text = source;
+                    } else if (key != null && "target".equals(name)) {
+                        text = target;
+                        hasTarget = true;
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (text != null) {
+                        text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (text != null) {
+                        if (depth == 0) {
+                            text = null;
+                        } else {
+                            depth--;
+                        }
+                    } else if (key != null && ("trans-unit".equals(xml.getLocalName())
+                                               || "unit".equals(xml.getLocalName()))) {
+                        handler.property(key, (hasTarget ? target : source).toString());
+                        key = null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void skipElement(final XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 Code-Troopers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import org.apache.maven.plugin.MojoFailureException;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Streams the scalars of a YAML document, whose root must be a mapping, under the dotted path of their keys :
+ * sequence elements are keyed by their index and null values are left out. Scalars are kept as written (yes, no or
+ * 1.0 are not converted), aliases are not supported. The parser events are consumed as they are read, no tree is
+ * built. Files are read as UTF-8.
+ */
+final class YamlSource implements BundleSource {
+    @Override
+    public Charset charset(final Charset configured) {
+        return Charsets.UTF_8;
+    }
+
+    @Override
+    public void read(final Reader reader, final Handler handler) throws IOException, MojoFailureException {
+        final FlatKeys keys = new FlatKeys();
+        final Deque<Collection> collections = new ArrayDeque<Collection>();
+        try {
+            for (Event event : new Yaml().parse(reader)) {
+                final Collection parent = collections.peek();
+                if (event instanceof ScalarEvent) {
+                    final ScalarEvent scalar = (ScalarEvent) event;
+                    if (parent == null) {
+                        if (!isNull(scalar)) {
+                            throw error("the root of the document must be a mapping", event);
+                        }
+                    } else if (parent.expectsKey()) {
+                        parent.key = scalar.getValue();
+                    } else {
+                        final String name = parent.valueName();
+                        if (!isNull(scalar)) {
+                            handler.property(keys.child(name), scalar.getValue());
+                        }
+                    }
+                } else if (event instanceof MappingStartEvent || event instanceof SequenceStartEvent) {
+                    final boolean mapping = event instanceof MappingStartEvent;
+                    if (parent == null) {
+                        if (!mapping) {
+                            throw error("the root of the document must be a mapping", event);
+                        }
+                        collections.push(new Collection(true, false));
+                    } else if (parent.expectsKey()) {
+                        throw error("only scalar keys are supported", event);
+                    } else {
+                        keys.push(parent.valueName());
+                        collections.push(new Collection(mapping, true));
+                    }
+                } else if (event instanceof CollectionEndEvent) {
+                    if (collections.pop().nested) {
+                        keys.pop();
+                    }
+                } else if (event instanceof AliasEvent) {
+                    throw error("aliases are not supported", event);
+                }
+            }
+        } catch (YAMLException e) {
+            throw new IllegalArgumentException("Malformed YAML, " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * An untagged plain scalar null, ~ or empty, as resolved by YAML.
+     */
+    private static boolean isNull(final ScalarEvent scalar) {
+        final String value = scalar.getValue();
+        return scalar.getImplicit().canOmitTagInPlainScalar()
+               && (value.isEmpty() || "~".equals(value) || "null".equals(value) || "Null".equals(value)
+                   || "NULL".equals(value));
+    }
+
+    private static IllegalArgumentException error(final String message, final Event event) {
+        return new IllegalArgumentException("Malformed YAML, " + message + " at line "
+                                            + (event.getStartMark().getLine() + 1));
+    }
+
+    private static final class Collection {
+        private final boolean mapping;
+        private final boolean nested;
+        /**
+         * The key of the next value of a mapping, {@code null} while the key is expected.
+         */
+        private String key;
+        private int index;
+
+        Collection(final boolean mapping, final boolean nested) {
+            this.mapping = mapping;
+            this.nested = nested;
+        }
+
+        boolean expectsKey() {
+            return mapping && key == null;
+        }
+
+        /**
+         * @return the name of the value that starts
+         */
+        String valueName() {
+            if (!mapping) {
+                return String.valueOf(index++);
+            }
+            final String name = key;
+            key = null;
+            return name;
+        }
+    }
+}
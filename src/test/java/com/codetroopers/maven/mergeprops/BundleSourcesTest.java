@@ -0,0 +1,180 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class BundleSourcesTest {
+    @Test
+    public void testJsonIsFlattened() throws Exception {
+        final Bundle bundle = read(BundleSources.JSON,
+                                   "{\"lang\": {\"hello\": \"Hello \\\"you\\\"\\n\","
+                                   + " \"days\": [\"Monday\", \"Tuesday\"],"
+                                   + " \"count\": 3, \"beta\": false, \"none\": null, \"empty\": {},"
+                                   + " \"summer\": \"\\u00e9t\\u00e9 \u20ac\"},\n \"lang.flat\": \"\"}");
+        assertEquals("[lang.hello, lang.days.0, lang.days.1, lang.count, lang.beta, lang.summer, lang.flat]",
+                     bundle.keys().toString());
+        assertEquals("Hello \"you\"\n", bundle.get("lang.hello"));
+        assertEquals("Tuesday", bundle.get("lang.days.1"));
+        assertEquals("3", bundle.get("lang.count"));
+        assertEquals("false", bundle.get("lang.beta"));
+        assertEquals("\u00e9t\u00e9 \u20ac", bundle.get("lang.summer"));
+        assertEquals("", bundle.get("lang.flat"));
+    }
+
+    @Test
+    public void testMalformedJson() throws Exception {
+        assertMalformed(BundleSources.JSON, "[\"root\"]", "root of the document");
+        assertMalformed(BundleSources.JSON, "{\"a\": \"b\",\n\"c\" \"d\"}", "line 2");
+        assertMalformed(BundleSources.JSON, "{\"a\": \"b\"", "expected");
+        assertMalformed(BundleSources.JSON, "{\"a\": yes}", "invalid value yes");
+        assertMalformed(BundleSources.JSON, "{\"a\": \"b\"} {}", "after the root object");
+    }
+
+    @Test
+    public void testYamlIsFlattened() throws Exception {
+        final Bundle bundle = read(BundleSources.YAML,
+                                   "# comment\nlang:\n  hello: Hello\n  quoted: 'it''s'\n  answer: yes\n"
+                                   + "  none: ~\n  text: \"null\"\n  days:\n    - Monday\n    - Tuesday\n"
+                                   + "  block: |\n    two\n    lines\n  flow: {a: b}\n");
+        assertEquals("[lang.hello, lang.quoted, lang.answer, lang.text, lang.days.0, lang.days.1, lang.block, "
+                     + "lang.flow.a]", bundle.keys().toString());
+        assertEquals("it's", bundle.get("lang.quoted"));
+        assertEquals("yes", bundle.get("lang.answer"));
+        assertEquals("null", bundle.get("lang.text"));
+        assertEquals("two\nlines\n", bundle.get("lang.block"));
+        assertEquals("b", bundle.get("lang.flow.a"));
+        assertTrue(read(BundleSources.YAML, "").isEmpty());
+    }
+
+    @Test
+    public void testMalformedYaml() throws Exception {
+        assertMalformed(BundleSources.YAML, "- a\n- b\n", "root of the document");
+        assertMalformed(BundleSources.YAML, "a: &x b\nc: *x\n", "aliases");
+        assertMalformed(BundleSources.YAML, "a: b\n c: d\n", "Malformed YAML");
+    }
+
+    @Test
+    public void testXliffUnits() throws Exception {
+        final Bundle v12 = read(BundleSources.XLIFF,
+                                "<?xml version=\"1.0\"?>\n"
+                                + "<xliff version=\"1.2\" xmlns=\"urn:oasis:names:tc:xliff:document:1.2\">"
+                                + "<file source-language=\"en\" target-language=\"fr\"><body>"
+                                + "<trans-unit id=\"1\" resname=\"lang.hello\"><source>Hello</source>"
+                                + "<target>Bonjour <g id=\"b\">&amp;</g> <![CDATA[<bye>]]></target>"
+                                + "<alt-trans><target>Salut</target></alt-trans></trans-unit>"
+                                + "<trans-unit id=\"lang.bye\"><source>Bye</source></trans-unit>"
+                                + "</body></file></xliff>");
+        assertEquals("[lang.hello, lang.bye]", v12.keys().toString());
+        assertEquals("Bonjour & <bye>", v12.get("lang.hello"));
+        assertEquals("Bye", v12.get("lang.bye"));
+
+        final Bundle v20 = read(BundleSources.XLIFF,
+                                "<xliff version=\"2.0\" xmlns=\"urn:oasis:names:tc:xliff:document:2.0\" srcLang=\"en\">"
+                                + "<file id=\"f\"><unit id=\"lang.hello\"><notes><note>greeting</note></notes>"
+                                + "<segment><source>Hello</source><target>Bonjour</target></segment>"
+                                + "<segment><source>!</source><target> !</target></segment></unit>"
+                                + "<unit id=\"u2\" name=\"lang.bye\"><segment><source>Bye</source>"
+                                + "<target>Salut</target></segment></unit></file></xliff>");
+        assertEquals("Bonjour !", v20.get("lang.hello"));
+        assertEquals("Salut", v20.get("lang.bye"));
+        assertEquals(2, v20.size());
+        assertMalformed(BundleSources.XLIFF, "<xliff><trans-unit><source>a</source>", "Malformed XLIFF");
+    }
+
+    @Test
+    public void testSourceIsChosenByExtensionOrFormat() throws Exception {
+        assertSame(BundleSources.JSON, BundleSources.forFile("l10n/lang_fr.json"));
+        assertSame(BundleSources.YAML, BundleSources.forFile("l10n/lang_fr.YML"));
+        assertSame(BundleSources.XLIFF, BundleSources.forFile("l10n/lang_fr.xlf"));
+        assertSame(BundleSources.PROPERTIES, BundleSources.forFile("l10n/lang_fr.txt"));
+        final Merge merge = new Merge();
+        assertNull(BundleSources.forMerge(merge));
+        merge.setInputFormat("YAML");
+        assertSame(BundleSources.YAML, BundleSources.forMerge(merge));
+        merge.setInputFormat(JsonSource.class.getName());
+        assertTrue(BundleSources.forMerge(merge) instanceof JsonSource);
+        merge.setInputFormat(String.class.getName());
+        try {
+            BundleSources.forMerge(merge);
+            fail("Not a BundleSource");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage().contains("not a BundleSource"));
+        }
+    }
+
+    @Test
+    public void testMergesNestedFormats() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final File l10n = new File(directory, "l10n");
+            assertTrue(l10n.mkdirs());
+            Files.write("{\"lang\": {\"hello\": \"Hello\", \"quote\": \"it's\"}}", new File(l10n, "lang_en.json"),
+                        Charsets.UTF_8);
+            Files.write("lang:\n  hello: Bonjour\n  quote: l'\u00e9t\u00e9\n", new File(l10n, "lang_fr.yml"),
+                        Charsets.UTF_8);
+            Files.write("help:\n  about: About\n", new File(l10n, "help_en.yaml"), Charsets.UTF_8);
+            Files.write("{\"help\": {\"about\": \"\u00c0 propos\"}}", new File(l10n, "help_fr.json"), Charsets.UTF_8);
+            final Merge merge = new Merge();
+            merge.setTarget("language.properties");
+            merge.setPattern("l10n/*");
+            final File output = new File(directory, "out");
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog()).merge();
+
+            final Properties fr = load(new File(output, "language_fr.properties"));
+            assertEquals(2 + 1, fr.size());
+            assertEquals("l''\u00e9t\u00e9", fr.getProperty("lang.quote"));
+            assertEquals("\u00c0 propos", fr.getProperty("help.about"));
+            assertEquals("it''s", load(new File(output, "language_en.properties")).getProperty("lang.quote"));
+
+            // keys are checked against the name of the file
+            Files.write("{\"other\": {\"about\": \"About\"}}", new File(l10n, "help_en.json"), Charsets.UTF_8);
+            assertTrue(new File(l10n, "help_en.yaml").delete());
+            try {
+                new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog()).merge();
+                fail("Invalid key");
+            } catch (MojoFailureException e) {
+                assertTrue(e.getMessage().contains("other.about"));
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private static Properties load(final File file) throws Exception {
+        final Properties properties = new Properties();
+        properties.load(Files.newReader(file, Charsets.ISO_8859_1));
+        return properties;
+    }
+
+    private static Bundle read(final BundleSource source, final String content) throws Exception {
+        final Bundle bundle = new Bundle();
+        source.read(new StringReader(content), new BundleSource.Handler() {
+            @Override
+            public void property(final String key, final String value) {
+                bundle.put(key, value);
+            }
+        });
+        return bundle;
+    }
+
+    private static void assertMalformed(final BundleSource source, final String content, final String message)
+            throws Exception {
+        try {
+            read(source, content);
+            fail("Malformed " + content);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FileIndexTest {
+    @Test
+    public void testPathPatterns() {
+        assertTrue(new PathPattern("l10n/*.properties").matches(path("l10n/lang_fr.properties")));
+        assertFalse(new PathPattern("l10n/*.properties").matches(path("l10n/sub/lang_fr.properties")));
+        assertTrue(new PathPattern("**/*.properties").matches(path("lang.properties")));
+        assertTrue(new PathPattern("**/*.properties").matches(path("a/b/lang.properties")));
+        assertTrue(new PathPattern("a/**/lang_??.properties").matches(path("a/lang_fr.properties")));
+        assertFalse(new PathPattern("a/**/lang_??.properties").matches(path("a/b/lang_fra.properties")));
+        assertTrue(new PathPattern("a/").matches(path("a/b/c")));
+        assertTrue(new PathPattern("a\\b\\*.txt").matches(path("a/b/c.txt")));
+        assertTrue(new PathPattern("x.y[1]+.properties").matches(path("x.y[1]+.properties")));
+
+        assertTrue(new PathPattern("src/*/resources/*.properties").mayMatchBelow(path("src/main")));
+        assertFalse(new PathPattern("src/*/resources/*.properties").mayMatchBelow(path("src/main/java")));
+        assertTrue(new PathPattern("src/*.properties").mayMatchBelow(path("src")));
+        assertFalse(new PathPattern("src/*.properties").mayMatchBelow(path("src/main")));
+        assertTrue(new PathPattern("**/target/**").matchesAllBelow(path("module/target")));
+        assertFalse(new PathPattern("**/target/**").matchesAllBelow(path("module")));
+        assertFalse(new PathPattern("**/target/*.properties").matchesAllBelow(path("module/target")));
+    }
+
+    @Test
+    public void testSharedIndexMatchesEveryMerge() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            write(directory, "l10n/lang_fr.properties", "l10n/lang_en.properties", "l10n/help_fr.properties",
+                  "other/errors_fr.properties", "other/old/errors_en.properties", "target/l10n/lang_fr.properties",
+                  "node_modules/x/errors_fr.properties", "README.md");
+            final Merge lang = merge("language.properties", "**/lang_*.properties");
+            final Merge errors = merge("errors.properties", "other/**/*.properties");
+            errors.setExcludes(new String[]{"**/old/"});
+            final FileIndex index = FileIndex.scan(directory, Arrays.asList(lang, errors));
+
+            assertEquals(Arrays.asList(native_("l10n/lang_en.properties"), native_("l10n/lang_fr.properties")),
+                         index.getFileNames(lang));
+            assertEquals(Arrays.asList(native_("other/errors_fr.properties")), index.getFileNames(errors));
+            // the build and dependency directories are not walked
+            assertEquals(6, index.size());
+
+            lang.setDefaultExcludes(false);
+            assertEquals(Arrays.asList(native_("l10n/lang_en.properties"), native_("l10n/lang_fr.properties"),
+                                       native_("target/l10n/lang_fr.properties")),
+                         lang.getFileNames(directory));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private static String[] path(final String path) {
+        return path.split("/");
+    }
+
+    private static String native_(final String path) {
+        return path.replace('/', File.separatorChar);
+    }
+
+    private static Merge merge(final String target, final String pattern) {
+        final Merge merge = new Merge();
+        merge.setTarget(target);
+        merge.setPattern(pattern);
+        return merge;
+    }
+
+    private static void write(final File directory, final String... paths) throws IOException {
+        for (String path : paths) {
+            final File file = new File(directory, path);
+            Files.createParentDirs(file);
+            Files.write("key=value\n", file, Charsets.ISO_8859_1);
+        }
+    }
+}
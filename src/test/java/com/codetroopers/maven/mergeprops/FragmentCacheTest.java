@@ -0,0 +1,77 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class FragmentCacheTest {
+    @Test
+    public void testPersistedEntriesSurviveTheCache() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final File cacheDirectory = new File(directory, "cache");
+            final File file = new File(directory, "lang_fr.properties");
+            Files.write("lang.hello=Bonjour\n", file, Charsets.ISO_8859_1);
+            final Merge merge = new Merge();
+            merge.setTarget("language.properties");
+            final Bundle entries = new Bundle();
+            entries.put("lang.hello", "Bonjour");
+            entries.put("lang.summer", "\u00e9t\u00e9 \u20ac \ud83d\ude00 \ud800 \u0000");
+            entries.put("lang.long", Strings.repeat("\u00e9", 70000));
+            new FragmentCache(false, cacheDirectory, Long.MAX_VALUE)
+                    .put(merge, file, file.length(), file.lastModified(), entries);
+
+            final FragmentCache cache = new FragmentCache(false, cacheDirectory, Long.MAX_VALUE);
+            assertEquals(entries, cache.get(merge, file, file.length(), file.lastModified()));
+            // touched but unchanged
+            assertTrue(file.setLastModified(file.lastModified() - 10000));
+            assertEquals(entries, cache.get(merge, file, file.length(), file.lastModified()));
+            // another merge checks the keys differently
+            merge.setExcludeKeyCheck(new String[]{"lang"});
+            assertNull(cache.get(merge, file, file.length(), file.lastModified()));
+            merge.setExcludeKeyCheck(null);
+            // same length, other content
+            Files.write("lang.hello=Bonsoir\n", file, Charsets.ISO_8859_1);
+            assertNull(cache.get(merge, file, file.length(), file.lastModified()));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntries() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final File cacheDirectory = new File(directory, "cache");
+            final File first = new File(directory, "first.properties");
+            final File second = new File(directory, "second.properties");
+            Files.write("first.key=value\n", first, Charsets.ISO_8859_1);
+            Files.write("second.key=value\n", second, Charsets.ISO_8859_1);
+            final Merge merge = new Merge();
+            merge.setTarget("all.properties");
+            final Bundle entries = new Bundle();
+            entries.put("key", Strings.repeat("value", 100));
+            final FragmentCache cache = new FragmentCache(false, cacheDirectory, 1000);
+            cache.put(merge, first, first.length(), first.lastModified(), entries);
+            cache.put(merge, second, second.length(), second.lastModified(), entries);
+            final File[] written = cacheDirectory.listFiles();
+            assertEquals(2, written.length);
+            for (File entry : written) {
+                assertTrue(entry.setLastModified(1000L));
+            }
+            // the first entry is used again, the second one is the least recently used
+            assertNotNull(cache.get(merge, first, first.length(), first.lastModified()));
+            cache.evict();
+            assertNotNull(cache.get(merge, first, first.length(), first.lastModified()));
+            assertNull(cache.get(merge, second, second.length(), second.lastModified()));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+
+import static org.junit.Assert.*;
+
+public class InputFilesTest {
+    @Test
+    public void testReadsAcrossBuffers() throws Exception {
+        final StringBuilder content = new StringBuilder("\ufeff");
+        for (int i = 0; i < 5000; i++) {
+            content.append("key.").append(i).append("=\u00e9t\u00e9 \u20ac \ud83d\ude00\n");
+        }
+        final File file = File.createTempFile("input", ".properties");
+        try {
+            Files.write(content, file, Charsets.UTF_8);
+            assertEquals(content.substring(1), read(file, Charsets.UTF_8));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        final File file = File.createTempFile("input", ".properties");
+        try {
+            assertEquals("", read(file, Charsets.UTF_8));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test(expected = MalformedInputException.class)
+    public void testMalformedInputIsReported() throws Exception {
+        final File file = File.createTempFile("input", ".properties");
+        try {
+            Files.write("key=\u00e9t\u00e9\n", file, Charsets.ISO_8859_1);
+            read(file, Charsets.UTF_8);
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    private String read(final File file, final Charset charset) throws IOException {
+        final Reader reader = InputFiles.open(file, charset);
+        try {
+            return CharStreams.toString(reader);
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListResourceBundle;
+import java.util.MissingResourceException;
+
+import static org.junit.Assert.*;
+
+public class KeysClassWriterTest {
+    @Test
+    public void testConstantNames() throws Exception {
+        assertEquals("LANG_HELLO", KeysClassWriter.constantName("lang.hello"));
+        assertEquals("LANG_HELLO_WORLD2", KeysClassWriter.constantName("lang.helloWorld2"));
+        assertEquals("LANG_HTML_TITLE", KeysClassWriter.constantName("lang.HTML-title."));
+        assertEquals("KEY_1ST", KeysClassWriter.constantName("1st"));
+        assertEquals("KEY_", KeysClassWriter.constantName(""));
+        assertEquals("\u00c9T\u00c9", KeysClassWriter.constantName("\u00e9t\u00e9"));
+    }
+
+    @Test
+    public void testGeneratedClassLooksMessagesUp() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final List<String> keys = new ArrayList<String>(Arrays.asList(
+                    "lang.bye", "lang.hello", "lang.hello_", "lang.quote\"\\u0022*/", "lang.line\nbreak",
+                    "lang.\u00e9t\u00e9", "size"));
+            for (int i = 0; i < 5000; i++) {
+                keys.add("lang.generated.key" + i);
+            }
+            final File source = new File(directory, "com/acme/LanguageKeys.java");
+            assertTrue(source.getParentFile().mkdirs());
+            Files.write(KeysClassWriter.write("com.acme.LanguageKeys", "language", keys), source);
+            final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            assertEquals(0, compiler.run(null, null, null, "-encoding", "US-ASCII", source.getPath()));
+
+            final ClassLoader loader = new URLClassLoader(new URL[]{directory.toURI().toURL()});
+            final Class<?> keysClass = loader.loadClass("com.acme.LanguageKeys");
+            assertEquals("language", keysClass.getField("BASE_NAME").get(null));
+            assertEquals(keys.size(), keysClass.getField("KEY_COUNT").getInt(null));
+            assertEquals(1, keysClass.getField("LANG_HELLO").getInt(null));
+            // colliding names get the number of their key
+            assertEquals(2, keysClass.getField("LANG_HELLO_2").getInt(null));
+            assertEquals(6, keysClass.getField("SIZE").getInt(null));
+            final Method key = keysClass.getMethod("key", int.class);
+            for (int i = 0; i < keys.size(); i++) {
+                assertEquals(keys.get(i), key.invoke(null, i));
+            }
+
+            final Object messages = keysClass.getMethod("messages", java.util.ResourceBundle.class)
+                                             .invoke(null, new ListResourceBundle() {
+                                                 @Override
+                                                 protected Object[][] getContents() {
+                                                     return new Object[][]{{"lang.hello", "Bonjour"},
+                                                                           {"lang.line\nbreak", "\u00e9t\u00e9"}};
+                                                 }
+                                             });
+            final Method get = messages.getClass().getMethod("get", int.class);
+            assertEquals("Bonjour", get.invoke(messages, 1));
+            assertEquals("\u00e9t\u00e9", get.invoke(messages, 4));
+            try {
+                get.invoke(messages, 0);
+                fail("Missing message");
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                assertEquals("lang.bye", ((MissingResourceException) e.getCause()).getKey());
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testNamesCollidingWithTheGeneratedMembersCompile() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final List<String> keys = Arrays.asList("a.b_2", "a.b", "a_b", "base_name", "hello", "key_count", "keys",
+                                                    "Keys");
+            final File source = new File(directory, "p/Msgs.java");
+            assertTrue(source.getParentFile().mkdirs());
+            Files.write(KeysClassWriter.write("p.Msgs", "language", keys), source);
+            final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            assertEquals(0, compiler.run(null, null, null, "-encoding", "US-ASCII", source.getPath()));
+
+            final Class<?> keysClass = new URLClassLoader(new URL[]{directory.toURI().toURL()}).loadClass("p.Msgs");
+            assertEquals(0, keysClass.getField("A_B_2").getInt(null));
+            assertEquals(1, keysClass.getField("A_B").getInt(null));
+            assertEquals(2, keysClass.getField("A_B_2_2").getInt(null));
+            assertEquals(3, keysClass.getField("BASE_NAME_3").getInt(null));
+            assertEquals(5, keysClass.getField("KEY_COUNT_5").getInt(null));
+            assertEquals(6, keysClass.getField("KEYS_6").getInt(null));
+            assertEquals(7, keysClass.getField("KEYS_7").getInt(null));
+            assertEquals("Keys", keysClass.getMethod("key", int.class).invoke(null, 7));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void testInvalidClassName() throws Exception {
+        KeysClassWriter.write("com.acme.1Keys", "language", Arrays.asList("lang.hello"));
+    }
+
+    @Test
+    public void testMergeGeneratesTheKeysClass() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final File l10n = new File(directory, "l10n");
+            assertTrue(l10n.mkdirs());
+            Files.write("lang.hello=Hello\nlang.bye=Bye\n", new File(l10n, "lang_en.properties"), Charsets.ISO_8859_1);
+            Files.write("lang.hello=Bonjour\nlang.bye=Salut\n", new File(l10n, "lang_fr.properties"),
+                        Charsets.ISO_8859_1);
+            final Merge merge = new Merge();
+            merge.setTarget("language.properties");
+            merge.setPattern("l10n/*.properties");
+            merge.setKeysClass("com.acme.LanguageKeys");
+            final File sources = new File(directory, "generated-sources");
+            final MergeContext context = MergeContext.builder(MoreExecutors.sameThreadExecutor())
+                                                     .sourcePath(sources.getPath()).build();
+            new MergeProperty(merge, new File(directory, "out").getPath(), directory, new SystemStreamLog(), context)
+                    .merge();
+            final String source = Files.toString(new File(sources, "com/acme/LanguageKeys.java"), Charsets.UTF_8);
+            assertTrue(source.contains("public static final int LANG_BYE = 0;"));
+            assertTrue(source.contains("public static final int LANG_HELLO = 1;"));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Field;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the merge goal against a generated tree of {@code load.files} fragments in each of {@code load.locales}
+ * locales, and fails when it takes longer or its heap peaks higher than its budgets. The {@code load} profile runs
+ * it alone with {@code -Xmx${load.maxHeap}m}, so that running out of heap fails it too : {@code mvn test -Pload}.
+ */
+public class MergeLoadTest {
+    private static final String[] LOCALES = {"fr", "en", "de", "es", "it", "nl", "pt", "pl", "sv", "da", "fi", "nb",
+                                             "cs", "hu", "ro", "el", "tr", "ru", "uk", "ja", "ko", "zh", "ar", "he",
+                                             "bg", "hr", "sk", "sl", "et", "lv", "lt", "ca", "eu", "gl", "is", "ga",
+                                             "mt", "sq", "sr", "mk", "hi", "th", "vi", "id", "ms", "fa", "ur", "bn"};
+    /**
+     * The number of fragments per directory of the tree.
+     */
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    private final int files = Integer.getInteger("load.files", 400);
+    private final int locales = Integer.getInteger("load.locales", 25);
+    private final int keysPerFile = Integer.getInteger("load.keysPerFile", 20);
+    private final long maxHeap = Long.getLong("load.maxHeap", 256L);
+    private final long maxPeakHeap = Long.getLong("load.maxPeakHeap", 192L);
+    private final long maxTime = Long.getLong("load.maxTime", 60L);
+    private final long maxUpToDateTime = Long.getLong("load.maxUpToDateTime", 10L);
+
+    @Test
+    public void testMergesLargeTreesWithinBudgets() throws Exception {
+        assertTrue("The heap budget is " + maxHeap + "MB, run with -Xmx" + maxHeap + "m as the load profile does",
+                   Runtime.getRuntime().maxMemory() <= maxHeap * 1024 * 1024);
+        final File directory = Files.createTempDir();
+        try {
+            generate(new File(directory, "l10n"));
+            final File output = new File(directory, "out");
+
+            resetPeakHeap();
+            final long merged = execute(directory, output);
+            final long peakHeap = peakHeap();
+            assertTrue("Merged " + files * locales + " files with a heap peaking at " + peakHeap / 1024 / 1024
+                       + "MB, over the budget of " + maxPeakHeap + "MB", peakHeap <= maxPeakHeap * 1024 * 1024);
+            assertTrue("Merged " + files * locales + " files in " + merged + "ms, over the budget of " + maxTime + "s",
+                       merged <= TimeUnit.SECONDS.toMillis(maxTime));
+            for (int locale = 0; locale < LOCALES.length; locale++) {
+                final File language = new File(output, "language_" + LOCALES[locale] + ".properties");
+                assertEquals(locale < locales, language.isFile());
+            }
+            assertEquals(files * keysPerFile, load(new File(output, "language_" + LOCALES[0] + ".properties")).size());
+            assertTrue(new File(output, "language_" + LOCALES[0] + ".bundle").isFile());
+
+            // nothing changed, the merge only scans the tree and checks the manifest
+            final long upToDate = execute(directory, output);
+            assertTrue("Checked " + files * locales + " up to date files in " + upToDate + "ms, over the budget of "
+                       + maxUpToDateTime + "s", upToDate <= TimeUnit.SECONDS.toMillis(maxUpToDateTime));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Writes {@code files} fragments per locale, {@link #FILES_PER_DIRECTORY} per directory, each holding
+     * {@code keysPerFile} keys prefixed by the name of the fragment. Some values hold quotes and arguments.
+     */
+    private void generate(final File l10n) throws Exception {
+        assertTrue("At most " + LOCALES.length + " locales are supported", locales <= LOCALES.length);
+        final Random random = new Random(42);
+        for (int file = 0; file < files; file++) {
+            final File module = new File(l10n, "module" + file / FILES_PER_DIRECTORY);
+            if (file % FILES_PER_DIRECTORY == 0) {
+                assertTrue(module.mkdirs());
+            }
+            final String prefix = "bundle" + file;
+            for (int locale = 0; locale < locales; locale++) {
+                final StringBuilder content = new StringBuilder();
+                for (int key = 0; key < keysPerFile; key++) {
+                    content.append(prefix).append(".key").append(key).append('=').append(LOCALES[locale])
+                           .append(random.nextInt(10) == 0 ? " l'argument {0}" : " value ")
+                           .append(random.nextInt(1000)).append('\n');
+                }
+                Files.write(content, new File(module, prefix + "_" + LOCALES[locale] + ".properties"),
+                            Charsets.ISO_8859_1);
+            }
+        }
+    }
+
+    /**
+     * Runs the merge goal as configured by Maven, incrementally and with both output formats.
+     *
+     * @return the time it took, in milliseconds
+     */
+    private static long execute(final File directory, final File output) throws Exception {
+        final Merge merge = new Merge();
+        merge.setTarget("language.properties");
+        merge.setPattern("l10n/**/*.properties");
+        merge.setFormat("both");
+        final Model model = new Model();
+        model.setBuild(new Build());
+        final MergeMojo mojo = new MergeMojo();
+        set(mojo, "project", new MavenProject(model));
+        set(mojo, "outputDirectory", output);
+        set(mojo, "sourceDirectory", new File(directory, "generated-sources"));
+        set(mojo, "directory", directory);
+        set(mojo, "merges", new Merge[]{merge});
+        set(mojo, "incremental", true);
+        set(mojo, "printMetrics", true);
+        final long start = System.nanoTime();
+        mojo.execute();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static void set(final Object mojo, final String name, final Object value) throws Exception {
+        final Field field = mojo.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+    private static Properties load(final File file) throws Exception {
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return the sum of the peak usages of the heap pools, which may not have peaked at the same time
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -1,14 +1,33 @@
 package com.codetroopers.maven.mergeprops;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -43,17 +62,17 @@ public class MergePropertyTest {
 
     @Test
     public void testInvalidPrefix() throws MojoFailureException {
-        Properties p = new Properties();
+        Bundle p = new Bundle();
         p.put("TEST.yata", "wondelle");
         assertFalse(MergeProperty.containsInvalidPrefix("TEST", p));
-        p = new Properties();
+        p = new Bundle();
         p.put("TESTu.yata", "wondelle");
         try {
             MergeProperty.containsInvalidPrefix("TEST", p);
             fail();
         } catch (MojoFailureException e) {
         }
-        p = new Properties();
+        p = new Bundle();
         p.put("T.yata", "wondelle");
         try {
             MergeProperty.containsInvalidPrefix("TEST", p);
@@ -64,27 +83,27 @@ public class MergePropertyTest {
 
     @Test
     public void testPreprocessSetDoubleQuotes() throws MojoFailureException {
-        Properties p = new Properties();
+        Bundle p = new Bundle();
         p.put("ya.ta", "chaine normale sans quote");
         p.put("yi.ti", "chaine avec un'simple quote");
         p.put("yu.tu", "chaine avec un''double simple quote");
         p.put("ye.te", "chaine ' avec un simple quote et des espaces et avec un '' double simple quote");
         p.put("yo.to", "chaine''''avec quatre simple quote");
-        Map<String, Properties> map = new HashMap<String, Properties>();
+        Map<String, Bundle> map = new HashMap<String, Bundle>();
         map.put("test", p);
         MergeProperty.processProperties(map, new Merge(), null);
-        final Properties q = map.get("test");
-        assertEquals("chaine normale sans quote", q.getProperty("ya.ta"));
-        assertEquals("chaine avec un''simple quote", q.getProperty("yi.ti"));
-        assertEquals("chaine avec un''double simple quote", q.getProperty("yu.tu"));
+        final Bundle q = map.get("test");
+        assertEquals("chaine normale sans quote", q.get("ya.ta"));
+        assertEquals("chaine avec un''simple quote", q.get("yi.ti"));
+        assertEquals("chaine avec un''double simple quote", q.get("yu.tu"));
         assertEquals("chaine '' avec un simple quote et des espaces et avec un '' double simple quote",
-                     q.getProperty("ye.te"));
-        assertEquals("chaine''''avec quatre simple quote", q.getProperty("yo.to"));
+                     q.get("ye.te"));
+        assertEquals("chaine''''avec quatre simple quote", q.get("yo.to"));
     }
 
     @Test
     public void testPreprocessFailsIfNotSameQuantity() throws Exception {
-        Map<String, Properties> map = commonInitForCount();
+        Map<String, Bundle> map = commonInitForCount();
         try {
             MergeProperty.processProperties(map, new Merge(), null);
             Assert.fail("There is not the same amount of keys in the two bundles");
@@ -101,25 +120,514 @@ public class MergePropertyTest {
     @Test
     public void testPreprocessCheckIgnoredIfPropertyPresent() throws Exception {
         System.setProperty(MergeProperty.ERROR_IGNORE_FLAG, "true");
-        Map<String, Properties> map = commonInitForCount();
-        MergeProperty.processProperties(map, new Merge(), null);
+        try {
+            Map<String, Bundle> map = commonInitForCount();
+            MergeProperty.processProperties(map, new Merge(), null);
+        } finally {
+            System.clearProperty(MergeProperty.ERROR_IGNORE_FLAG);
+        }
     }
 
-    private Map<String, Properties> commonInitForCount() {
-        Properties p =new Properties();
+    @Test
+    public void testPreprocessFailsIfSameQuantityButDifferentKeys() throws Exception {
+        Bundle p = new Bundle();
         p.put("trala.la", "itoo");
         p.put("trili.li", "zizou");
-        Properties p2 = new Properties();
+        Bundle p2 = new Bundle();
+        p2.put("trala.la", "qqqqs");
+        p2.put("trulu.lu", "lkj");
+        Map<String, Bundle> map = new LinkedHashMap<String, Bundle>();
+        map.put("fr", p);
+        map.put("en", p2);
+        try {
+            MergeProperty.processProperties(map, new Merge(), null);
+            Assert.fail("The two bundles do not hold the same keys");
+        } catch (MojoFailureException e) {
+            assertEquals(Sets.newHashSet("trili.li", "trulu.lu"), Sets.newHashSet((Collection) e.getSource()));
+            assertTrue(e.getLongMessage(), e.getLongMessage().contains("Locale [fr] is missing : \ntrulu.lu"));
+            assertTrue(e.getLongMessage(), e.getLongMessage().contains("Locale [en] is missing : \ntrili.li"));
+        }
+    }
+
+    private Map<String, Bundle> commonInitForCount() {
+        Bundle p = new Bundle();
+        p.put("trala.la", "itoo");
+        p.put("trili.li", "zizou");
+        Bundle p2 = new Bundle();
         p2.put("trala.la", "qqqqs");
         p2.put("trili.li", "SXC");
         p2.put("trulu.lu", "lkj");
-        Properties p3 = new Properties();
+        Bundle p3 = new Bundle();
         p3.put("trala.la", "qqqqs");
         p3.put("trolo.lo", "loal");
-        Map<String, Properties> map = new HashMap<String, Properties>();
+        Map<String, Bundle> map = new HashMap<String, Bundle>();
         map.put("test1", p);
         map.put("test2", p2);
         map.put("test3", p3);
         return map;
     }
+
+    @Test
+    public void testLoadFilesOpensEachFileOnce() throws Exception {
+        File directory = createBundleTree();
+        try {
+            final Multiset<String> opened = HashMultiset.create();
+            MergeProperty mergeProperty = new MergeProperty(createMerge(), null, directory, new SystemStreamLog()) {
+                @Override
+                Reader openFile(final File file, final Charset charset) throws IOException {
+                    opened.add(file.getName());
+                    return super.openFile(file, charset);
+                }
+            };
+            final Map<String, Bundle> loaded = mergeProperty.loadFiles();
+
+            assertEquals(3, opened.size());
+            assertEquals(3, opened.elementSet().size());
+            assertEquals("Bonjour", loaded.get("fr").get("lang.hello"));
+            assertEquals("A propos", loaded.get("fr").get("help.about"));
+            assertEquals("Bye", loaded.get("en").get("lang.bye"));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testParallelLoadKeepsTheFileOrderAndReportsDuplicateKeys() throws Exception {
+        final File directory = Files.createTempDir();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 50; i++) {
+                final File module = new File(directory, String.format("module%02d", i));
+                assertTrue(module.mkdirs());
+                Files.write("lang.key" + i + "=" + i + "\nlang.shared=" + i + "\n",
+                            new File(module, "lang_fr.properties"), Charsets.ISO_8859_1);
+                Files.write("lang.key" + i + "=" + i + "\nlang.shared=" + i + "\n",
+                            new File(module, "lang_en.properties"), Charsets.ISO_8859_1);
+            }
+            final Merge merge = new Merge();
+            merge.setTarget("language.properties");
+            merge.setPattern("**/*.properties");
+            final MergeContext context = MergeContext.builder(executor).build();
+            final Map<String, Bundle> loaded = new MergeProperty(merge, null, directory, new SystemStreamLog(),
+                                                                 context).loadFiles();
+
+            final Bundle fr = loaded.get("fr");
+            assertEquals(51, fr.size());
+            // the last file wins, the keys keep the position of their first definition
+            assertEquals("49", fr.get("lang.shared"));
+            assertEquals("[lang.key0, lang.shared, lang.key1]", Lists.newArrayList(fr.keys()).subList(0, 3)
+                                                                         .toString());
+            assertEquals(2 * 49, context.getReport().metrics(merge).getDuplicateKeys());
+        } finally {
+            executor.shutdownNow();
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testLowMemoryMergeWritesTheSameFiles() throws Exception {
+        final File directory = Files.createTempDir();
+        final File output = new File(directory, "out");
+        final File lowMemoryOutput = new File(directory, "low");
+        try {
+            for (int i = 0; i < 20; i++) {
+                final File module = new File(directory, String.format("l10n/module%02d", i));
+                assertTrue(module.mkdirs());
+                Files.write("lang.key" + i + "=Key " + i + "\nlang.shared=" + i + "\n",
+                            new File(module, "lang_en.properties"), Charsets.ISO_8859_1);
+                Files.write("lang.key" + i + "=Cl\\u00e9 d'" + i + "\nlang.shared=" + i + "\n",
+                            new File(module, "lang_fr.properties"), Charsets.ISO_8859_1);
+            }
+            final Merge merge = new Merge();
+            merge.setTarget("language.properties");
+            merge.setPattern("l10n/**/*.properties");
+            final MergeContext context = MergeContext.sequential();
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog(), context).merge();
+            final Merge lowMemory = new Merge();
+            lowMemory.setTarget("language.properties");
+            lowMemory.setPattern("l10n/**/*.properties");
+            lowMemory.setLowMemory(true);
+            // spills the entries of every locale to several runs
+            lowMemory.setRunSize(3);
+            final File runs = new File(directory, "runs");
+            final MergeContext lowMemoryContext = MergeContext.builder(MoreExecutors.sameThreadExecutor())
+                                                              .runsDirectory(runs).build();
+            new MergeProperty(lowMemory, lowMemoryOutput.getPath(), directory, new SystemStreamLog(),
+                              lowMemoryContext).merge();
+
+            assertEquals(2, lowMemoryOutput.list().length);
+            // the runs are spilled to the given directory and deleted once merged
+            assertEquals(0, runs.list().length);
+            for (String name : output.list()) {
+                assertEquals(name, Files.toString(new File(output, name), Charsets.ISO_8859_1),
+                             Files.toString(new File(lowMemoryOutput, name), Charsets.ISO_8859_1));
+            }
+            final MergeMetrics metrics = lowMemoryContext.getReport().metrics(lowMemory);
+            assertEquals(MergeMetrics.Status.MERGED, metrics.getStatus());
+            assertEquals(context.getReport().metrics(merge).getDuplicateKeys(), metrics.getDuplicateKeys());
+            assertEquals(Integer.valueOf(21), metrics.getLocaleKeys().get("fr"));
+
+            final File frOutput = new File(lowMemoryOutput, "language_fr.properties");
+            final byte[] merged = Files.toByteArray(frOutput);
+            Files.write("lang.key0=Cl\\u00e9 0\nlang.extra=Extra\n",
+                        new File(directory, "l10n/module00/lang_fr.properties"), Charsets.ISO_8859_1);
+            try {
+                new MergeProperty(lowMemory, lowMemoryOutput.getPath(), directory, new SystemStreamLog()).merge();
+                fail("The locales do not hold the same keys");
+            } catch (MojoFailureException e) {
+                assertEquals(Sets.newHashSet("lang.extra"), Sets.newHashSet((Collection) e.getSource()));
+                assertTrue(e.getLongMessage(), e.getLongMessage().contains("Locale [en] is missing : \nlang.extra"));
+            }
+            // the previous final files are kept
+            assertArrayEquals(merged, Files.toByteArray(frOutput));
+            assertEquals(2, lowMemoryOutput.list().length);
+
+            final StringBuilder onlyEn = new StringBuilder("lang.key0=Key 0\n");
+            for (int i = 0; i < MergeProperty.MAX_REPORTED_KEYS + 500; i++) {
+                onlyEn.append("lang.only").append(i).append("=Only\n");
+            }
+            Files.write(onlyEn, new File(directory, "l10n/module00/lang_en.properties"), Charsets.ISO_8859_1);
+            try {
+                new MergeProperty(lowMemory, lowMemoryOutput.getPath(), directory, new SystemStreamLog()).merge();
+                fail("The locales do not hold the same keys");
+            } catch (MojoFailureException e) {
+                // only the first lonely keys are reported
+                assertEquals(MergeProperty.MAX_REPORTED_KEYS, ((Collection) e.getSource()).size());
+                assertTrue(e.getLongMessage().contains("\n... and 501 more\n"));
+            }
+
+            lowMemory.setFormat("binary");
+            try {
+                new MergeProperty(lowMemory, lowMemoryOutput.getPath(), directory, new SystemStreamLog()).merge();
+                fail("The low memory merge only writes properties files");
+            } catch (MojoExecutionException e) {
+                assertTrue(e.getMessage().contains("low memory"));
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testLoadFilesEscapesAndChecksKeysWhileParsing() throws Exception {
+        File directory = createBundleTree();
+        try {
+            final MergeProperty mergeProperty = new MergeProperty(createMerge(), null, directory,
+                                                                  new SystemStreamLog());
+            assertEquals("Au revoir l''ami", mergeProperty.loadFiles().get("fr").get("lang.bye"));
+
+            Files.write("lang.hello=Salut\nhelp.about=A propos\nlang.bye=Ciao\n",
+                        new File(directory, "l10n/help_fr.properties"), Charsets.ISO_8859_1);
+            try {
+                mergeProperty.loadFiles();
+                fail("lang.hello does not belong to the help bundle");
+            } catch (MojoFailureException e) {
+                // every invalid key of the file is reported
+                assertEquals("2 invalid property key(s) found in " + "l10n" + File.separator + "help_fr.properties"
+                             + " [not beginning with help.] :\nlang.hello\nlang.bye", e.getMessage());
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testLoadFilesWithInputEncoding() throws Exception {
+        File directory = createBundleTree();
+        try {
+            Files.write("\ufefflang.hello=H\u00e9 \u20ac\nlang.bye=Bye\n",
+                        new File(directory, "l10n/lang_en.properties"), Charsets.UTF_8);
+            final Merge merge = createMerge();
+            merge.setEncoding("UTF-8");
+            final Map<String, Bundle> loaded = new MergeProperty(merge, null, directory, new SystemStreamLog())
+                    .loadFiles();
+            assertEquals("H\u00e9 \u20ac", loaded.get("en").get("lang.hello"));
+            assertEquals("Au revoir l''ami", loaded.get("fr").get("lang.bye"));
+
+            merge.setEncoding("US-ASCII");
+            try {
+                new MergeProperty(merge, null, directory, new SystemStreamLog()).loadFiles();
+                fail("lang_en.properties is not ASCII");
+            } catch (MojoExecutionException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("as US-ASCII"));
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testLoadAndProcessOnSingleThreadPool() throws Exception {
+        File directory = createBundleTree();
+        // a single worker must not starve when the locale tasks are submitted from a task of the same pool
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            final MergeProperty mergeProperty = new MergeProperty(createMerge(), null, directory,
+                                                                  new SystemStreamLog(),
+                                                                  MergeContext.builder(executor).build());
+            final Future<Map<String, Bundle>> loading = executor.submit(new Callable<Map<String, Bundle>>() {
+                @Override
+                public Map<String, Bundle> call() throws Exception {
+                    return mergeProperty.loadFiles();
+                }
+            });
+            final Map<String, Bundle> loaded = loading.get(10, TimeUnit.SECONDS);
+            assertEquals(Sets.newHashSet("en", "fr"), loaded.keySet());
+            System.setProperty(MergeProperty.ERROR_IGNORE_FLAG, "true");
+            MergeProperty.processProperties(loaded, createMerge(), null, executor);
+            assertEquals("Au revoir l''ami", loaded.get("fr").get("lang.bye"));
+        } finally {
+            System.clearProperty(MergeProperty.ERROR_IGNORE_FLAG);
+            executor.shutdown();
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testIncrementalMergeOnlyReloadsChangedLocales() throws Exception {
+        File directory = createBundleTree();
+        File output = new File(directory, "out");
+        try {
+            assertEquals(3, incrementalMerge(directory, output).size());
+            final File frOutput = new File(output, "language_fr.properties");
+            assertTrue(frOutput.isFile());
+
+            assertTrue(incrementalMerge(directory, output).isEmpty());
+
+            Files.write("lang.hello=Hi\nlang.bye=Bye\n", new File(directory, "l10n/lang_en.properties"),
+                        Charsets.ISO_8859_1);
+            assertEquals(Sets.newHashSet("lang_en.properties"), incrementalMerge(directory, output).elementSet());
+
+            assertTrue(frOutput.delete());
+            assertEquals(Sets.newHashSet("lang_fr.properties", "help_fr.properties"),
+                         incrementalMerge(directory, output).elementSet());
+            assertTrue(frOutput.isFile());
+
+            // the count mismatch ignored so far is reported by a strict build
+            System.clearProperty(MergeProperty.ERROR_IGNORE_FLAG);
+            try {
+                new MergeProperty(createMerge(), output.getPath(), directory, new SystemStreamLog(),
+                                  MergeContext.builder(MoreExecutors.sameThreadExecutor())
+                                              .manifest(MergeManifest.load(output)).build()).merge();
+                fail("The locales do not hold the same keys");
+            } catch (MojoFailureException e) {
+                assertTrue(e.getMessage().startsWith("Invalid property count"));
+            }
+        } finally {
+            System.clearProperty(MergeProperty.ERROR_IGNORE_FLAG);
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testUnchangedOutputIsNotRewritten() throws Exception {
+        File directory = createBundleTree();
+        File output = new File(directory, "out");
+        try {
+            System.setProperty(MergeProperty.ERROR_IGNORE_FLAG, "true");
+            new MergeProperty(createMerge(), output.getPath(), directory, new SystemStreamLog()).merge();
+            final File enOutput = new File(output, "language_en.properties");
+            assertTrue(enOutput.setLastModified(1000L));
+
+            new MergeProperty(createMerge(), output.getPath(), directory, new SystemStreamLog()).merge();
+            assertEquals(1000L, enOutput.lastModified());
+
+            Files.write("lang.hello=Hi\nlang.bye=Bye\n", new File(directory, "l10n/lang_en.properties"),
+                        Charsets.ISO_8859_1);
+            new MergeProperty(createMerge(), output.getPath(), directory, new SystemStreamLog()).merge();
+            assertTrue(enOutput.lastModified() != 1000L);
+            assertTrue(Files.toString(enOutput, Charsets.ISO_8859_1).contains("lang.hello=Hi"));
+            assertEquals(2, output.list().length);
+        } finally {
+            System.clearProperty(MergeProperty.ERROR_IGNORE_FLAG);
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testBinaryFormat() throws Exception {
+        File directory = createBundleTree();
+        File output = new File(directory, "out");
+        try {
+            System.setProperty(MergeProperty.ERROR_IGNORE_FLAG, "true");
+            final Merge merge = createMerge();
+            merge.setFormat("both");
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog()).merge();
+            assertTrue(new File(output, "language_en.properties").isFile());
+            final File enBundle = new File(output, "language_en.bundle");
+            final Bundle en = new Bundle();
+            en.put("lang.hello", "Hello");
+            en.put("lang.bye", "Bye");
+            assertArrayEquals(BinaryBundleWriter.write(en), Files.toByteArray(enBundle));
+
+            merge.setFormat("binary");
+            FileUtils.deleteDirectory(output);
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog()).merge();
+            assertEquals(2, output.list().length);
+            assertTrue(enBundle.isFile());
+
+            merge.setFormat("xml");
+            try {
+                new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog()).merge();
+                fail("Invalid output format");
+            } catch (MojoExecutionException e) {
+                assertTrue(e.getMessage().contains("xml"));
+            }
+        } finally {
+            System.clearProperty(MergeProperty.ERROR_IGNORE_FLAG);
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testValidateMessageFormat() throws Exception {
+        File directory = createBundleTree();
+        File output = new File(directory, "out");
+        try {
+            final Merge merge = createMerge();
+            merge.setValidateMessageFormat(true);
+            assertTrue(new File(directory, "l10n/help_fr.properties").delete());
+            Files.write("lang.hello=Hello {0}\nlang.bye=Bye {0} {1}\n",
+                        new File(directory, "l10n/lang_en.properties"), Charsets.ISO_8859_1);
+            // the arguments differ, only reported
+            Files.write("lang.hello=Bonjour {0}\nlang.bye=Au revoir {1}\n",
+                        new File(directory, "l10n/lang_fr.properties"), Charsets.ISO_8859_1);
+            final MergeContext context = MergeContext.sequential();
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog(), context).merge();
+            assertEquals(MergeMetrics.Status.MERGED, context.getReport().metrics(merge).getStatus());
+
+            Files.write("lang.hello=Bonjour {0\nlang.bye=Au revoir {x}\n",
+                        new File(directory, "l10n/lang_fr.properties"), Charsets.ISO_8859_1);
+            try {
+                new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog()).merge();
+                fail("Malformed message formats");
+            } catch (MojoFailureException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith(
+                        "2 malformed message format(s) found for final file language.properties :\n"
+                        + "[fr] lang.bye : "));
+                assertTrue(e.getMessage(), e.getMessage().contains("\n[fr] lang.hello : "));
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testTemplatesSkipTheIgnoredMalformedValues() throws Exception {
+        File directory = createBundleTree();
+        File output = new File(directory, "out");
+        try {
+            System.setProperty(MergeProperty.ERROR_IGNORE_FLAG, "true");
+            final Merge merge = createMerge();
+            merge.setValidateMessageFormat(true);
+            merge.setTemplates(true);
+            Files.write("lang.hello=Hello {-1}\nlang.bye=Bye {70000}\n",
+                        new File(directory, "l10n/lang_en.properties"), Charsets.ISO_8859_1);
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog()).merge();
+            assertTrue(new File(output, "language_en.templates").isFile());
+            assertTrue(new File(output, "language_fr.templates").isFile());
+        } finally {
+            System.clearProperty(MergeProperty.ERROR_IGNORE_FLAG);
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testPoolValuesAndOmitBaseLocaleValues() throws Exception {
+        File directory = createBundleTree();
+        File output = new File(directory, "out");
+        try {
+            final File l10n = new File(directory, "l10n");
+            assertTrue(new File(l10n, "help_fr.properties").delete());
+            Files.write("lang.hello=Hello\nlang.bye=Bye\n", new File(l10n, "lang.properties"), Charsets.ISO_8859_1);
+            Files.write("lang.hello=Bonjour\nlang.bye=Bye\n", new File(l10n, "lang_fr.properties"),
+                        Charsets.ISO_8859_1);
+            final MergeContext context = MergeContext.builder(MoreExecutors.sameThreadExecutor())
+                                                     .manifest(MergeManifest.load(output)).build();
+            final Merge merge = createMerge();
+            merge.setPoolValues(true);
+            merge.setOmitBaseLocaleValues(true);
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog(), context).merge();
+
+            final MergeMetrics metrics = context.getReport().metrics(merge);
+            assertEquals(6, metrics.getValues());
+            assertEquals(3, metrics.getDistinctValues());
+            assertTrue(Files.toString(new File(output, "language.properties"), Charsets.ISO_8859_1)
+                            .contains("lang.bye=Bye"));
+            assertFalse(Files.toString(new File(output, "language_en.properties"), Charsets.ISO_8859_1)
+                             .contains("lang."));
+            final String fr = Files.toString(new File(output, "language_fr.properties"), Charsets.ISO_8859_1);
+            assertTrue(fr.contains("lang.hello=Bonjour"));
+            assertFalse(fr.contains("lang.bye"));
+
+            // a change of the base locale is merged into the final files of the other locales
+            Files.write("lang.hello=Bonjour\nlang.bye=Good bye\n", new File(l10n, "lang.properties"),
+                        Charsets.ISO_8859_1);
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog(), context).merge();
+            assertTrue(Files.toString(new File(output, "language_en.properties"), Charsets.ISO_8859_1)
+                            .contains("lang.hello=Hello"));
+            assertFalse(Files.toString(new File(output, "language_fr.properties"), Charsets.ISO_8859_1)
+                             .contains("lang.hello"));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testMetricsReport() throws Exception {
+        File directory = createBundleTree();
+        File output = new File(directory, "out");
+        try {
+            System.setProperty(MergeProperty.ERROR_IGNORE_FLAG, "true");
+            final MergeContext context = MergeContext.sequential();
+            final Merge merge = createMerge();
+            new MergeProperty(merge, output.getPath(), directory, new SystemStreamLog(), context).merge();
+
+            final MergeMetrics metrics = context.getReport().metrics(merge);
+            assertEquals(MergeMetrics.Status.MERGED, metrics.getStatus());
+            assertEquals(3, metrics.getFiles());
+            assertEquals(2, metrics.getWrittenFiles());
+            assertEquals(Integer.valueOf(3), metrics.getLocaleKeys().get("fr"));
+            assertEquals(Integer.valueOf(2), metrics.getLocaleKeys().get("en"));
+            assertTrue(context.getReport().toTable().contains("language.properties"));
+            assertTrue(context.getReport().toJson().startsWith("{\"merges\":[{\"target\":\"language.properties\","));
+        } finally {
+            System.clearProperty(MergeProperty.ERROR_IGNORE_FLAG);
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private Multiset<String> incrementalMerge(final File directory, final File output) throws Exception {
+        final Multiset<String> opened = HashMultiset.create();
+        final MergeManifest manifest = MergeManifest.load(output);
+        System.setProperty(MergeProperty.ERROR_IGNORE_FLAG, "true");
+        new MergeProperty(createMerge(), output.getPath(), directory, new SystemStreamLog(),
+                          MergeContext.builder(MoreExecutors.sameThreadExecutor()).manifest(manifest).build()) {
+            @Override
+            Reader openFile(final File file, final Charset charset) throws IOException {
+                opened.add(file.getName());
+                return super.openFile(file, charset);
+            }
+        }.merge();
+        manifest.save();
+        return opened;
+    }
+
+    private Merge createMerge() {
+        Merge merge = new Merge();
+        merge.setTarget("language.properties");
+        merge.setPattern("l10n/*.properties");
+        return merge;
+    }
+
+    private File createBundleTree() throws IOException {
+        File directory = Files.createTempDir();
+        File l10n = new File(directory, "l10n");
+        assertTrue(l10n.mkdirs());
+        Files.write("lang.hello=Hello\nlang.bye=Bye\n", new File(l10n, "lang_en.properties"), Charsets.ISO_8859_1);
+        Files.write("lang.hello=Bonjour\nlang.bye=Au revoir l'ami\n", new File(l10n, "lang_fr.properties"),
+                    Charsets.ISO_8859_1);
+        Files.write("help.about=A propos\n", new File(l10n, "help_fr.properties"), Charsets.ISO_8859_1);
+        return directory;
+    }
 }
@@ -0,0 +1,96 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class MergeWatcherTest {
+    @Test
+    public void testOnlyChangedLocalesAreMergedAgain() throws Exception {
+        final File directory = Files.createTempDir();
+        final File output = new File(directory, "target/i18n");
+        final File l10n = new File(directory, "l10n");
+        assertTrue(l10n.mkdirs());
+        Files.write("lang.hello=Hello\n", new File(l10n, "lang_en.properties"), Charsets.ISO_8859_1);
+        Files.write("lang.hello=Bonjour\n", new File(l10n, "lang_fr.properties"), Charsets.ISO_8859_1);
+        final Merge merge = new Merge();
+        merge.setTarget("language.properties");
+        merge.setPattern("l10n/*.properties");
+        final MergeWatcher watcher = new MergeWatcher(directory, output.getPath(), null, null,
+                                                      Collections.singletonList(merge), new SystemStreamLog(),
+                                                      MoreExecutors.sameThreadExecutor(), 50,
+                                                      MergeManifest.load(output), new FragmentCache());
+        try {
+            watcher.start();
+            final File enOutput = new File(output, "language_en.properties");
+            final File frOutput = new File(output, "language_fr.properties");
+            assertTrue(frOutput.setLastModified(1000L));
+            // creating the output directory does not change any merge
+            watcher.awaitChanges(100);
+            assertTrue(watcher.remerge().isEmpty());
+
+            Files.write("lang.hello=Hi there\n", new File(l10n, "lang_en.properties"), Charsets.ISO_8859_1);
+            assertTrue(watcher.awaitChanges(30000));
+            assertEquals(Arrays.asList(merge), watcher.remerge());
+            assertTrue(Files.toString(enOutput, Charsets.ISO_8859_1).contains("lang.hello=Hi there"));
+            assertEquals(1000L, frOutput.lastModified());
+
+            Files.write("help.about=A propos\n", new File(l10n, "help_fr.properties"), Charsets.ISO_8859_1);
+            Files.write("help.about=About\n", new File(l10n, "help_en.properties"), Charsets.ISO_8859_1);
+            assertTrue(watcher.awaitChanges(30000));
+            assertEquals(Arrays.asList(merge), watcher.remerge());
+            assertTrue(Files.toString(frOutput, Charsets.ISO_8859_1).contains("help.about=A propos"));
+            assertTrue(Files.toString(enOutput, Charsets.ISO_8859_1).contains("lang.hello=Hi there"));
+        } finally {
+            watcher.close();
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testUnchangedFilesAreNotReadAgain() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final File l10n = new File(directory, "l10n");
+            assertTrue(l10n.mkdirs());
+            Files.write("lang.hello=Hello\n", new File(l10n, "lang_en.properties"), Charsets.ISO_8859_1);
+            Files.write("lang.bye=Bye\n", new File(l10n, "lang2_en.properties"), Charsets.ISO_8859_1);
+            final Merge merge = new Merge();
+            merge.setTarget("language.properties");
+            merge.setPattern("l10n/*.properties");
+            merge.setExcludeKeyCheck(new String[]{"lang2"});
+            final MergeContext context = MergeContext.builder(MoreExecutors.sameThreadExecutor())
+                                                     .fragmentCache(new FragmentCache()).build();
+            final Multiset<String> opened = HashMultiset.create();
+            final MergeProperty mergeProperty = new MergeProperty(merge, null, directory, new SystemStreamLog(),
+                                                                  context) {
+                @Override
+                Reader openFile(final File file, final Charset charset) throws IOException {
+                    opened.add(file.getName());
+                    return super.openFile(file, charset);
+                }
+            };
+            mergeProperty.loadFiles();
+            Files.write("lang.hello=Hello again\n", new File(l10n, "lang_en.properties"), Charsets.ISO_8859_1);
+            assertEquals("Hello again", mergeProperty.loadFiles().get("en").get("lang.hello"));
+            assertEquals(2, opened.count("lang_en.properties"));
+            assertEquals(1, opened.count("lang2_en.properties"));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.codetroopers.maven.mergeprops;
+
+import org.junit.Test;
+
+import java.text.MessageFormat;
+
+import static org.junit.Assert.*;
+
+public class MessageFormatEscaperTest {
+    @Test
+    public void testSameAsRegexWithinValues() {
+        String[] values = {"chaine normale sans quote", "chaine avec un'simple quote",
+                           "chaine avec un''double simple quote", "chaine''''avec quatre simple quote",
+                           "chaine ' avec un simple quote et des espaces et avec un '' double simple quote",
+                           "l'ami de l''autre", ""};
+        for (String value : values) {
+            assertEquals(value, value.replaceAll("([^'])'([^'])", "$1''$2"), MessageFormatEscaper.escape(value));
+        }
+    }
+
+    @Test
+    public void testReturnsSameInstanceWhenNothingToEscape() {
+        final String noQuote = new String("aucune quote");
+        assertSame(noQuote, MessageFormatEscaper.escape(noQuote));
+        final String escaped = new String("deja ''echappee''");
+        assertSame(escaped, MessageFormatEscaper.escape(escaped));
+    }
+
+    @Test
+    public void testEdgePositions() {
+        assertEquals("''debut", MessageFormatEscaper.escape("'debut"));
+        assertEquals("fin''", MessageFormatEscaper.escape("fin'"));
+        assertEquals("''", MessageFormatEscaper.escape("'"));
+        assertEquals("a''b''c", MessageFormatEscaper.escape("a'b'c"));
+        assertEquals("''{0}''", MessageFormatEscaper.escape("'{0}'"));
+        assertEquals("'''", MessageFormatEscaper.escape("'''"));
+        assertEquals("l'ami d'Hugo", MessageFormat.format(MessageFormatEscaper.escape("l'ami d'{0}"), "Hugo"));
+    }
+}
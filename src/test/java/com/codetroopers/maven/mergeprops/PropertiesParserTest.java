@@ -0,0 +1,72 @@
+package com.codetroopers.maven.mergeprops;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class PropertiesParserTest {
+    @Test
+    public void testSeparatorsAndComments() throws Exception {
+        assertParsedLikeProperties("# comment\n! other comment\n"
+                                   + "a=1\nb:2\nc 3\nd\t=\t4\n   e   :   5  \nf\ng=\nh = = 6\ni::7\n\n\n");
+    }
+
+    @Test
+    public void testContinuationLines() throws Exception {
+        assertParsedLikeProperties("a=one \\\n    two\\\n\tthree\nb=trailing\\\\\nc=crlf\\\r\n   next\r\n"
+                                   + "d=cr\\\r  next\re=eof\\");
+        assertParsedLikeProperties("# comment \\\na=not continued\nkey\\\n  continued=value\n");
+    }
+
+    @Test
+    public void testEscapes() throws Exception {
+        assertParsedLikeProperties("key\\ with\\ spaces=v\na\\=b=c\\:d\ntabs=\\t\\n\\r\\f\n"
+                                   + "unicode=\\u00e9t\\u00E9 \\u20ac\nother=\\q\\'\\\\\n\\#not=comment\n");
+    }
+
+    @Test
+    public void testDuplicateKeysKeepFirstPositionAndLastValue() throws Exception {
+        final Bundle bundle = parse("b=1\na=2\nb=3\n");
+        assertEquals("[b, a]", bundle.keys().toString());
+        assertEquals("3", bundle.get("b"));
+    }
+
+    @Test
+    public void testLinesLongerThanTheBuffers() throws Exception {
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            value.append(i % 10 == 0 ? "\\u00e9" : "x");
+        }
+        assertParsedLikeProperties("long=" + value + "\\\n  " + value + "\nshort=1\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedUnicodeEscape() throws Exception {
+        parse("a=\\u00zz\n");
+    }
+
+    private Bundle parse(final String content) throws Exception {
+        final Bundle bundle = new Bundle();
+        PropertiesParser.parse(new StringReader(content), new BundleSource.Handler() {
+            @Override
+            public void property(final String key, final String value) {
+                bundle.put(key, value);
+            }
+        });
+        return bundle;
+    }
+
+    private void assertParsedLikeProperties(final String content) throws Exception {
+        final Properties expected = new Properties();
+        expected.load(new StringReader(content));
+        final Bundle parsed = parse(content);
+        assertEquals(expected.stringPropertyNames(), parsed.keys());
+        for (Map.Entry<String, String> entry : parsed) {
+            assertEquals(entry.getKey(), expected.getProperty(entry.getKey()), entry.getValue());
+        }
+    }
+}
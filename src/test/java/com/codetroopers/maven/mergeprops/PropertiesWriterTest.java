@@ -0,0 +1,79 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class PropertiesWriterTest {
+    @Test
+    public void testSortedOutputIsByteForByteDeterministic() throws Exception {
+        Bundle p = new Bundle();
+        p.put("lang.b", "deux");
+        p.put("lang.a", "un");
+        p.put("lang.c", "trois");
+        Bundle q = new Bundle();
+        q.put("lang.c", "trois");
+        q.put("lang.a", "un");
+        q.put("lang.b", "deux");
+        final PropertiesWriter writer = new PropertiesWriter(true, "\n", Charsets.ISO_8859_1);
+
+        final byte[] expected = "#lang_fr.properties\nlang.a=un\nlang.b=deux\nlang.c=trois\n"
+                .getBytes(Charsets.ISO_8859_1);
+        assertArrayEquals(expected, writer.write("lang_fr.properties", p));
+        assertArrayEquals(expected, writer.write("lang_fr.properties", q));
+        assertArrayEquals(expected, writer.write("lang_fr.properties", p));
+    }
+
+    @Test
+    public void testInputOrderAndLineSeparator() throws Exception {
+        Bundle p = new Bundle();
+        p.put("lang.b", "deux");
+        p.put("lang.a", "un");
+        final PropertiesWriter writer = new PropertiesWriter(false, PropertiesWriter.toLineSeparator("CRLF"),
+                                                             Charsets.ISO_8859_1);
+        assertEquals("lang.b=deux\r\nlang.a=un\r\n", new String(writer.write(null, p), Charsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testEscapingMatchesPropertiesStore() throws Exception {
+        Bundle p = new Bundle();
+        p.put("lang.key with spaces", " leading space and trailing ");
+        p.put("lang.special", "a=b:c#d!e\\f\tg\nh\ri\fj");
+        p.put("lang.unicode", "\u00e9t\u00e9 \u20ac \ud83d\ude00");
+        final byte[] written = new PropertiesWriter(true, "\n", Charsets.ISO_8859_1).write(null, p);
+
+        final Properties expected = new Properties();
+        for (Map.Entry<String, String> entry : p) {
+            expected.setProperty(entry.getKey(), entry.getValue());
+        }
+        final ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        expected.store(stored, null);
+        final String storedContent = new String(stored.toByteArray(), Charsets.ISO_8859_1);
+        for (String line : new String(written, Charsets.ISO_8859_1).split("\n")) {
+            assertTrue(line, storedContent.contains(line));
+        }
+        assertEquals(expected, load(written));
+    }
+
+    @Test
+    public void testUtf8WithoutUnicodeEscapes() throws Exception {
+        Bundle p = new Bundle();
+        p.put("lang.unicode", "\u00e9t\u00e9 \u20ac \ud83d\ude00");
+        p.put("lang.control", "\u0001");
+        final byte[] written = new PropertiesWriter(true, "\n", Charsets.UTF_8).write(null, p);
+        assertEquals("lang.control=\\u0001\nlang.unicode=\u00e9t\u00e9 \u20ac \ud83d\ude00\n",
+                     new String(written, Charsets.UTF_8));
+    }
+
+    private Properties load(final byte[] content) throws Exception {
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(content));
+        return properties;
+    }
+}
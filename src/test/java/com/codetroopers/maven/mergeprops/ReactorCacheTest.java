@@ -0,0 +1,70 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReactorCacheTest {
+    @Test
+    public void testModulesShareTheFilesTheyMerge() throws Exception {
+        final File directory = Files.createTempDir();
+        try {
+            final File l10n = new File(directory, "l10n");
+            assertTrue(l10n.mkdirs());
+            Files.write("lang.hello=Hello\n", new File(l10n, "lang_en.properties"), Charsets.ISO_8859_1);
+            Files.write("lang.hello=Bonjour\n", new File(l10n, "lang_fr.properties"), Charsets.ISO_8859_1);
+            final Object build = new Object();
+            final ReactorCache cache = ReactorCache.forBuild(build, Suppliers.ofInstance(new FragmentCache()));
+            assertSame(cache, ReactorCache.forBuild(build, new Supplier<FragmentCache>() {
+                @Override
+                public FragmentCache get() {
+                    throw new AssertionError("The build already has a cache");
+                }
+            }));
+
+            final MergeMetrics first = merge(cache, directory, "language.properties");
+            final MergeMetrics second = merge(cache, directory, "messages.properties");
+            assertEquals(2, first.getFiles());
+            assertEquals(0, first.getCachedFiles());
+            assertEquals(0, second.getFiles());
+            assertEquals(2, second.getCachedFiles());
+            assertTrue(new File(directory, "out/messages_fr.properties").isFile());
+
+            // files added by a previous module are merged by the next ones
+            Files.write("lang.hello=Hallo\n", new File(l10n, "lang_de.properties"), Charsets.ISO_8859_1);
+            final MergeMetrics third = merge(cache, directory, "labels.properties");
+            assertEquals(1, third.getFiles());
+            assertEquals(2, third.getCachedFiles());
+            assertTrue(new File(directory, "out/labels_de.properties").isFile());
+
+            assertNotSame(cache, ReactorCache.forBuild(new Object(), Suppliers.ofInstance(new FragmentCache())));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private static MergeMetrics merge(final ReactorCache cache, final File directory, final String target)
+            throws Exception {
+        final Merge merge = new Merge();
+        merge.setTarget(target);
+        merge.setPattern("l10n/*.properties");
+        final List<Merge> merges = Collections.singletonList(merge);
+        final MergeContext context = MergeContext.builder(MoreExecutors.sameThreadExecutor())
+                                                 .fileIndex(FileIndex.scan(directory, merges))
+                                                 .fragmentCache(cache.getFragmentCache()).build();
+        new MergeProperty(merge, new File(directory, "out").getPath(), directory, new SystemStreamLog(), context)
+                .merge();
+        return context.getReport().metrics(merge);
+    }
+}
@@ -0,0 +1,52 @@
+package com.codetroopers.maven.mergeprops;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ShardsTest {
+    @Test
+    public void testSplitsByPrefix() {
+        final Bundle properties = new Bundle();
+        properties.put("lang.hello", "Hello");
+        properties.put("checkout.pay", "Pay");
+        properties.put("lang.bye", "Bye");
+        properties.put("about", "About");
+        properties.put("checkout.cancel", "Cancel");
+
+        final List<Bundle> shards = Shards.split(properties, true, 0);
+        assertEquals(3, shards.size());
+        assertEquals(Arrays.asList("about"), Lists.newArrayList(shards.get(0).keys()));
+        assertEquals(Arrays.asList("checkout.pay", "checkout.cancel"), Lists.newArrayList(shards.get(1).keys()));
+        assertEquals(Arrays.asList("lang.hello", "lang.bye"), Lists.newArrayList(shards.get(2).keys()));
+        final Bundle index = Shards.index("language", shards);
+        assertEquals("language-0", index.get("about"));
+        assertEquals("language-1", index.get("checkout"));
+        assertEquals("language-2", index.get("lang"));
+
+        // in the order of their first key
+        assertEquals(Arrays.asList("lang.hello", "lang.bye"),
+                     Lists.newArrayList(Shards.split(properties, false, 0).get(0).keys()));
+    }
+
+    @Test
+    public void testGroupsPrefixesUpToTheMaximumSize() {
+        final Bundle properties = new Bundle();
+        properties.put("a.key", "12345");
+        properties.put("b.key", "12345");
+        properties.put("c.key", "12345678901234567890");
+        properties.put("d.key", "1");
+
+        // 12 characters per line of a and b, the c prefix does not fit with them and is larger than a shard
+        final List<Bundle> shards = Shards.split(properties, true, 24);
+        assertEquals(3, shards.size());
+        assertEquals(2, shards.get(0).size());
+        assertEquals(Arrays.asList("c.key"), Lists.newArrayList(shards.get(1).keys()));
+        assertEquals(Arrays.asList("d.key"), Lists.newArrayList(shards.get(2).keys()));
+        assertEquals("language-0", Shards.index("language", shards).get("b"));
+    }
+}